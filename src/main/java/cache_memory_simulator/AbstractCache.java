@@ -0,0 +1,458 @@
+package cache_memory_simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Read/write logic shared by the cache engines: hit and miss handling, write and allocation
+ * policies, fills, write-backs, miss classification and checkpointing.
+ * <p>
+ * An engine only decides where a block may live: it finds the line holding a block, picks a
+ * victim, and keeps its replacement state up to date through the hooks below.
+ */
+public abstract class AbstractCache implements CacheMemory {
+    protected static final int NONE = -1;
+
+    protected final CacheLine[] lines;
+    protected final Memory memory;
+    protected final CacheGeometry geometry;
+    protected final int blockSize;
+    protected final WritePolicy writePolicy;
+    protected final AllocationPolicy allocationPolicy;
+    // Merges stores that bypass the cache (write-through and no-write-allocate); null when disabled
+    private final WriteCombiningBuffer writeBuffer;
+    // Records what the access in progress overwrites; null unless an AccessHistory is recording
+    private UndoLog journal;
+
+    protected long hits = 0;
+    protected long misses = 0;
+    protected String lastMissType;
+    protected String lastEvictionMessage = "";
+    protected Set<Long> seenBlocks = new HashSet<>();
+    // Memory words not moved compared with whole-block fills and write-backs
+    protected long wordsSaved = 0;
+    // Dirty lines written back to memory on eviction
+    protected long writebacks = 0;
+    // State of the generator behind RANDOM replacement; seeded, so every run (and every replay) is the same
+    protected long randomState = 0x9E3779B97F4A7C15L;
+
+    protected long lastBlockNumber;
+    protected long lastTag;
+    protected int lastLineIndex;
+
+    protected AbstractCache(CacheGeometry geometry, Memory memory, WritePolicy writePolicy,
+                            AllocationPolicy allocationPolicy, int writeCombiningEntries) {
+        if (writeCombiningEntries < 0)
+            throw new IllegalArgumentException("Write-combining entries must not be negative, got " + writeCombiningEntries);
+        // Partial lines and combined stores track words in a 64-bit mask
+        if ((allocationPolicy == AllocationPolicy.WRITE_VALIDATE || writeCombiningEntries > 0) && geometry.getBlockSize() > 64)
+            throw new IllegalArgumentException("Write-validate and write-combining support blocks of up to 64 words");
+
+        this.geometry = geometry;
+        this.memory = memory;
+        this.blockSize = geometry.getBlockSize();
+        this.writePolicy = writePolicy;
+        this.allocationPolicy = allocationPolicy;
+        this.writeBuffer = writeCombiningEntries > 0 ? new WriteCombiningBuffer(memory, geometry, writeCombiningEntries) : null;
+
+        this.lines = new CacheLine[geometry.getLines()];
+        for (int i = 0; i < lines.length; i++)
+            lines[i] = new CacheLine(i, blockSize);
+    }
+
+    // ---- Engine hooks ----
+
+    // Line holding the block, or NONE
+    protected abstract int findLine(long blockNumber);
+
+    // Line the block should be loaded into; may be a valid line that is about to be evicted
+    protected abstract int findVictimIndex(long blockNumber);
+
+    // Replacement bookkeeping when a line is hit, and when a block has just been placed in a line
+    protected abstract void onHit(int lineIndex);
+
+    protected abstract void onFill(int lineIndex, long blockNumber);
+
+    // Called before a valid line is replaced
+    protected void onEvict(int lineIndex, long blockNumber) {
+    }
+
+    // Block number of the block held by a valid line
+    protected abstract long blockNumberOf(int lineIndex);
+
+    // How a non-compulsory miss is reported
+    protected String replacementMissType() {
+        return "Conflict";
+    }
+
+    protected abstract void saveReplacementState(DataOutputStream out) throws IOException;
+
+    protected abstract void restoreReplacementState(DataInputStream in) throws IOException;
+
+    // Replacement state the undo log saves and restores for a line, e.g. its LRU timestamp
+    protected long replacementStamp(int lineIndex) {
+        return 0;
+    }
+
+    protected void setReplacementStamp(int lineIndex, long stamp) {
+    }
+
+    // Counter that orders the stamps
+    protected long replacementClock() {
+        return 0;
+    }
+
+    protected void setReplacementClock(long clock) {
+    }
+
+    // Called after lines and stamps were rolled back, to rebuild anything derived from them
+    protected void replacementStateRestored() {
+    }
+
+    // Uniform in [0, bound), from a xorshift64* generator
+    protected int nextRandom(int bound) {
+        randomState ^= randomState >>> 12;
+        randomState ^= randomState << 25;
+        randomState ^= randomState >>> 27;
+        return (int) (((randomState * 0x2545F4914F6CDD1DL) >>> 33) % bound);
+    }
+
+    // ---- Accesses ----
+
+    @Override
+    public boolean read(long address) {
+        this.lastEvictionMessage = "";
+        this.lastBlockNumber = geometry.blockNumber(address);
+        this.lastTag = geometry.tag(lastBlockNumber);
+        int offset = geometry.offset(address);
+
+        int lineIndex = findLine(lastBlockNumber);
+        if (lineIndex != NONE) {
+            lastLineIndex = lineIndex;
+            if (journal != null) journal.line(lineIndex);
+            onHit(lineIndex);
+            CacheLine line = lines[lineIndex];
+            if (line.hasWord(offset)) {
+                hits++;
+                lastMissType = "Hit";
+                return true;
+            }
+            // The tag matched but the word was never filled: fetch what is missing around it
+            misses++;
+            lastMissType = geometry.isSectored() ? "Sector" : "Partial";
+            fetchMissing(line, lastBlockNumber, offset);
+            return false;
+        }
+
+        misses++;
+        classifyMiss(lastBlockNumber);
+        lastLineIndex = allocate(lastBlockNumber, geometry.sectorMask(offset));
+        return false;
+    }
+
+    @Override
+    public boolean write(long address, String data) {
+        this.lastEvictionMessage = "";
+        this.lastBlockNumber = geometry.blockNumber(address);
+        this.lastTag = geometry.tag(lastBlockNumber);
+        int offset = geometry.offset(address);
+
+        int lineIndex = findLine(lastBlockNumber);
+        boolean hit = lineIndex != NONE;
+        if (hit) {
+            if (journal != null) journal.line(lineIndex);
+            onHit(lineIndex);
+            CacheLine line = lines[lineIndex];
+            if (line.hasWord(offset) || allocationPolicy == AllocationPolicy.WRITE_VALIDATE) {
+                hits++;
+                lastMissType = "Hit";
+            } else {
+                // Sectored line without this sector: fetch the sector before writing into it
+                hit = false;
+                misses++;
+                lastMissType = "Sector";
+                fetchMissing(line, lastBlockNumber, offset);
+            }
+        } else {
+            misses++;
+            classifyMiss(lastBlockNumber);
+            switch (allocationPolicy) {
+                case NO_WRITE_ALLOCATE -> {
+                    lastLineIndex = NONE;
+                    storeToMemory(address, data);
+                    return false;
+                }
+                case WRITE_VALIDATE -> lineIndex = allocate(lastBlockNumber, 0);
+                default -> lineIndex = allocate(lastBlockNumber, geometry.sectorMask(offset));
+            }
+        }
+        lastLineIndex = lineIndex;
+
+        CacheLine line = lines[lineIndex];
+        if (journal != null) journal.word(lineIndex, offset);
+        line.getData()[offset] = data;
+        line.setValidWords(line.getValidWords() | 1L << offset);
+        if (writePolicy == WritePolicy.WRITE_THROUGH) {
+            storeToMemory(address, data);
+        } else {
+            line.setDirty(true);
+            line.setDirtyWords(line.getDirtyWords() | geometry.sectorMask(offset));
+        }
+        return hit;
+    }
+
+    // Tags, valid and dirty bits and replacement state only: no data moves, no memory traffic, and
+    // neither the counters nor the compulsory-miss tracker are updated, so lines filled here hold
+    // empty words. Meant for sampled replay, where only hit ratios are measured.
+    @Override
+    public void warm(long address, boolean write) {
+        long blockNumber = geometry.blockNumber(address);
+        int offset = geometry.offset(address);
+        long sector = geometry.sectorMask(offset);
+        int lineIndex = findLine(blockNumber);
+        if (lineIndex == NONE) {
+            if (write && allocationPolicy == AllocationPolicy.NO_WRITE_ALLOCATE)
+                return;
+            lineIndex = findVictimIndex(blockNumber);
+            CacheLine line = lines[lineIndex];
+            if (line.isValid())
+                onEvict(lineIndex, blockNumberOf(lineIndex));
+            // Warming is never journaled, so the victim's array can be reused instead of allocating one
+            Arrays.fill(line.getData(), "");
+            line.setTag(geometry.tag(blockNumber));
+            line.setValid(true);
+            line.setDirty(false);
+            line.setValidWords(0);
+            line.setDirtyWords(0);
+            onFill(lineIndex, blockNumber);
+        } else {
+            onHit(lineIndex);
+        }
+        CacheLine line = lines[lineIndex];
+        // A missing word brings in its sector, except for a write-validated store
+        if (!line.hasWord(offset) && !(write && allocationPolicy == AllocationPolicy.WRITE_VALIDATE))
+            line.setValidWords(line.getValidWords() | sector);
+        if (write)
+            line.setValidWords(line.getValidWords() | 1L << offset);
+        if (write && writePolicy == WritePolicy.WRITE_BACK) {
+            line.setDirty(true);
+            line.setDirtyWords(line.getDirtyWords() | sector);
+        }
+    }
+
+    private void classifyMiss(long blockNumber) {
+        boolean isCompulsory = seenBlocks.add(blockNumber);
+        if (isCompulsory && journal != null) journal.seenBlock(blockNumber);
+        lastMissType = isCompulsory ? "Compulsory" : replacementMissType();
+    }
+
+    // Evicts the victim for the block and loads the words selected by fetchMask into it; the rest start empty
+    private int allocate(long blockNumber, long fetchMask) {
+        int victimIndex = findVictimIndex(blockNumber);
+        if (journal != null) journal.line(victimIndex);
+        CacheLine line = lines[victimIndex];
+        if (line.isValid()) {
+            long oldBlockNumber = blockNumberOf(victimIndex);
+            if (line.isDirty())
+                flushDirtyLineToMemory(line, oldBlockNumber);
+            onEvict(victimIndex, oldBlockNumber);
+        }
+
+        line.setData(new String[blockSize]);
+        line.setTag(geometry.tag(blockNumber));
+        line.setValid(true);
+        line.setDirty(false);
+        line.setDirtyWords(0);
+        line.setValidWords(0);
+        if (fetchMask != -1L)
+            Arrays.fill(line.getData(), "");
+        if (fetchMask != 0)
+            fetch(line, blockNumber, fetchMask);
+        // Compared with a cache that always fills the whole block
+        wordsSaved += blockSize - geometry.wordCount(fetchMask);
+
+        onFill(victimIndex, blockNumber);
+        return victimIndex;
+    }
+
+    // Fetches the words of the offset's sector (the whole block if not sectored) that the line lacks
+    private void fetchMissing(CacheLine line, long blockNumber, int offset) {
+        long mask = geometry.sectorMask(offset) & ~line.getValidWords();
+        if (journal != null)
+            for (int i = 0; i < blockSize; i++)
+                if (((mask >>> i) & 1) != 0)
+                    journal.word(line.getLineIndex(), i);
+        fetch(line, blockNumber, mask);
+        // A whole-block cache would already have had these words
+        wordsSaved -= geometry.wordCount(mask);
+    }
+
+    // Loads the words selected by mask from memory into the line
+    private void fetch(CacheLine line, long blockNumber, long mask) {
+        if (writeBuffer != null)
+            writeBuffer.flush(blockNumber);
+        memory.readBlock(geometry.baseAddress(blockNumber), line.getData(), mask);
+        line.setValidWords(line.getValidWords() | mask);
+    }
+
+    private void flushDirtyLineToMemory(CacheLine line, long oldBlockNumber) {
+        long oldBaseAddress = geometry.baseAddress(oldBlockNumber);
+        // Only dirty words (or sectors) the line actually holds go back; a write-validated line may be partial
+        long mask = line.getDirtyWords() & line.getValidWords();
+        memory.writeBlock(oldBaseAddress, line.getData(), mask);
+        writebacks++;
+        wordsSaved += blockSize - geometry.wordCount(mask);
+        this.lastEvictionMessage = "Write-Back: Evicted dirty block " + oldBlockNumber + " to memory and wrote to address " + oldBaseAddress;
+    }
+
+    private void storeToMemory(long address, String data) {
+        if (writeBuffer != null)
+            writeBuffer.store(address, data);
+        else
+            memory.write(address, data);
+    }
+
+    void setJournal(UndoLog journal) {
+        this.journal = journal;
+    }
+
+    // Serialized write-combining entries, so the undo log can roll them back; null without a buffer
+    byte[] saveWriteBuffer() {
+        if (writeBuffer == null) return null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeBuffer.saveState(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    void restoreWriteBuffer(byte[] state) {
+        if (writeBuffer == null) return;
+        try {
+            writeBuffer.restoreState(new DataInputStream(new ByteArrayInputStream(state)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void drainWriteBuffer() {
+        if (writeBuffer != null)
+            writeBuffer.drain();
+    }
+
+    @Override
+    public long getCombinedStores() {
+        return writeBuffer == null ? 0 : writeBuffer.getCombinedStores();
+    }
+
+    @Override
+    public long getWordsSaved() {
+        return wordsSaved;
+    }
+
+    // ---- Accessors ----
+
+    @Override
+    public CacheLine[] getLines() {
+        return lines;
+    }
+
+    @Override
+    public long getHits() {
+        return hits;
+    }
+
+    @Override
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String getLastMissType() {
+        return lastMissType;
+    }
+
+    @Override
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public String getLastEvictionMessage() {
+        return lastEvictionMessage;
+    }
+
+    @Override
+    public long getWritebacks() {
+        return writebacks;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    @Override
+    public AllocationPolicy getAllocationPolicy() {
+        return allocationPolicy;
+    }
+
+    // ---- Checkpoints ----
+
+    @Override
+    public void saveState(DataOutputStream out) throws IOException {
+        Checkpoint.writeVarLong(out, blockSize);
+        Checkpoint.writeVarLong(out, geometry.getAssociativity());
+        Checkpoint.writeLines(out, lines);
+        saveReplacementState(out);
+        Checkpoint.writeVarLong(out, hits);
+        Checkpoint.writeVarLong(out, misses);
+        Checkpoint.writeBlockSet(out, seenBlocks);
+        Checkpoint.writeVarLong(out, wordsSaved);
+        Checkpoint.writeVarLong(out, randomState);
+        Checkpoint.writeVarLong(out, writebacks);
+        if (writeBuffer != null) {
+            writeBuffer.saveState(out);
+        } else {
+            Checkpoint.writeVarLong(out, 0); // no pending entries
+            Checkpoint.writeVarLong(out, 0); // no combined stores
+        }
+    }
+
+    @Override
+    public void restoreState(DataInputStream in) throws IOException {
+        Checkpoint.expect(in, blockSize, "block size");
+        Checkpoint.expect(in, geometry.getAssociativity(), "associativity");
+        Checkpoint.readLines(in, lines);
+        restoreReplacementState(in);
+        hits = Checkpoint.readVarLong(in);
+        misses = Checkpoint.readVarLong(in);
+        Checkpoint.readBlockSet(in, seenBlocks);
+        wordsSaved = Checkpoint.readVarLong(in);
+        randomState = Checkpoint.readVarLong(in);
+        writebacks = Checkpoint.readVarLong(in);
+        if (writeBuffer != null) {
+            writeBuffer.restoreState(in);
+        } else {
+            if (Checkpoint.readVarLong(in) != 0)
+                throw new IOException("Checkpoint has pending write-combining entries but the cache has no write-combining buffer");
+            Checkpoint.readVarLong(in);
+        }
+        lastMissType = null;
+        lastEvictionMessage = "";
+    }
+}
@@ -0,0 +1,148 @@
+package cache_memory_simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time travel for interactive sessions: every access made through the history can be stepped back
+ * and forward, or jumped to by its number.
+ * <p>
+ * A full checkpoint is kept every {@code snapshotInterval} accesses, along with an {@link UndoLog}
+ * of the accesses since the latest one. Stepping back within that stretch only rolls entries back.
+ * Going further back restores the nearest earlier checkpoint and replays the recorded accesses up to
+ * the target, so no jump replays more than one interval. Replay reproduces the original run because
+ * the caches are deterministic, RANDOM replacement included.
+ * <p>
+ * Only the state the engines keep through the {@link AbstractCache} hooks is rolled back by the undo
+ * log; extra engine state (such as the monitors of a {@link PartitionedCache}) is only exact after a
+ * checkpoint restore or replay.
+ */
+public class AccessHistory {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 4096;
+
+    private final AbstractCache cache;
+    private final Memory memory;
+    private final int snapshotInterval;
+    private final UndoLog undoLog;
+    // snapshots.get(k) is the state after k * snapshotInterval accesses
+    private final List<byte[]> snapshots = new ArrayList<>();
+
+    // The recorded accesses; a null datum marks a read
+    private long[] addresses = new long[1024];
+    private String[] data = new String[1024];
+    // Their outcomes, so windowed metrics can be rebuilt after moving through the history
+    private boolean[] hits = new boolean[1024];
+    private String[] missTypes = new String[1024];
+    private int[] writebacks = new int[1024];
+    private int recorded = 0;
+    private int position = 0;
+
+    public AccessHistory(AbstractCache cache, Memory memory, int snapshotInterval) {
+        if (snapshotInterval < 1)
+            throw new IllegalArgumentException("Snapshot interval must be at least 1, got " + snapshotInterval);
+        this.cache = cache;
+        this.memory = memory;
+        this.snapshotInterval = snapshotInterval;
+        this.undoLog = new UndoLog(cache, memory);
+        cache.setJournal(undoLog);
+        memory.setJournal(undoLog);
+    }
+
+    public boolean read(long address) {
+        return record(address, null);
+    }
+
+    public boolean write(long address, String value) {
+        return record(address, value);
+    }
+
+    // A new access after stepping back replaces the old future
+    private boolean record(long address, String value) {
+        recorded = position;
+        int keep = position / snapshotInterval + 1;
+        while (snapshots.size() > keep)
+            snapshots.remove(snapshots.size() - 1);
+
+        if (recorded == addresses.length) {
+            addresses = Arrays.copyOf(addresses, recorded * 2);
+            data = Arrays.copyOf(data, recorded * 2);
+            hits = Arrays.copyOf(hits, recorded * 2);
+            missTypes = Arrays.copyOf(missTypes, recorded * 2);
+            writebacks = Arrays.copyOf(writebacks, recorded * 2);
+        }
+        addresses[recorded] = address;
+        data[recorded] = value;
+        recorded++;
+        return execute();
+    }
+
+    // Performs the recorded access at the current position
+    private boolean execute() {
+        if (position % snapshotInterval == 0) {
+            if (snapshots.size() == position / snapshotInterval)
+                snapshots.add(Checkpoint.toBytes(cache, memory));
+            undoLog.clear();
+        }
+        undoLog.begin();
+        long writebacksBefore = cache.getWritebacks();
+        int index = position++;
+        String value = data[index];
+        boolean hit = value == null ? cache.read(addresses[index]) : cache.write(addresses[index], value);
+        hits[index] = hit;
+        missTypes[index] = cache.getLastMissType();
+        writebacks[index] = (int) (cache.getWritebacks() - writebacksBefore);
+        return hit;
+    }
+
+    public void stepBack() {
+        jumpTo(position - 1);
+    }
+
+    public void stepForward() {
+        jumpTo(position + 1);
+    }
+
+    // Moves to the state after the given number of recorded accesses
+    public void jumpTo(int target) {
+        target = Math.max(0, Math.min(target, recorded));
+        if (target < position) {
+            if (target >= position - undoLog.size()) {
+                while (position > target) {
+                    undoLog.undoLast();
+                    position--;
+                }
+                cache.replacementStateRestored();
+            } else {
+                int snapshot = target / snapshotInterval;
+                Checkpoint.fromBytes(snapshots.get(snapshot), cache, memory);
+                position = snapshot * snapshotInterval;
+                undoLog.clear();
+            }
+        }
+        while (position < target)
+            execute();
+    }
+
+    // Feeds the outcomes of the accesses up to the current position to freshly created metrics
+    public void replayInto(WindowedMetrics metrics) {
+        for (int i = 0; i < position; i++)
+            metrics.record(hits[i], missTypes[i], writebacks[i]);
+    }
+
+    public boolean canStepBack() {
+        return position > 0;
+    }
+
+    public boolean canStepForward() {
+        return position < recorded;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getLength() {
+        return recorded;
+    }
+}
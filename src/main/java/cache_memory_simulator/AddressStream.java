@@ -0,0 +1,20 @@
+package cache_memory_simulator;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * A lazily produced sequence of memory accesses. Addresses are handed out one at a time,
+ * so a stream can describe billions of accesses without ever storing them.
+ */
+public interface AddressStream extends PrimitiveIterator.OfLong {
+
+    // True if the access last returned by nextLong() is a store rather than a load
+    default boolean isWrite() {
+        return false;
+    }
+
+    // Tenant (or core) that issued the access last returned by nextLong(), for shared caches
+    default int tenant() {
+        return 0;
+    }
+}
@@ -0,0 +1,8 @@
+package cache_memory_simulator;
+
+// What a write miss does with the cache
+public enum AllocationPolicy {
+    WRITE_ALLOCATE,    // fetch the block, then write into it
+    NO_WRITE_ALLOCATE, // send the store to memory and leave the cache untouched
+    WRITE_VALIDATE     // allocate the line without fetching; only the written words become valid
+}
@@ -0,0 +1,137 @@
+package cache_memory_simulator;
+
+/**
+ * How a cache splits an address into tag, set index and block offset.
+ * <p>
+ * The geometry is validated once, at construction. When both the block size and the number of
+ * sets are powers of two the split is done with shifts and masks; otherwise it falls back to
+ * division, which is slower but allows any geometry. Addresses are unsigned 64-bit values.
+ * <p>
+ * A block may be split into sectors that are filled and written back independently; by default a
+ * block is a single sector.
+ */
+public final class CacheGeometry {
+    private final int lines;
+    private final int blockSize;
+    private final int associativity;
+    private final int numSets;
+    private final int sectorSize;
+
+    private final boolean powerOfTwo;
+    private final int offsetBits;
+    private final int indexBits;
+    private final long offsetMask;
+    private final long setMask;
+
+    public CacheGeometry(int lines, int blockSize, int associativity) {
+        this(lines, blockSize, associativity, blockSize);
+    }
+
+    public CacheGeometry(int lines, int blockSize, int associativity, int sectorSize) {
+        if (lines <= 0)
+            throw new IllegalArgumentException("Number of lines must be positive, got " + lines);
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive, got " + blockSize);
+        if (associativity <= 0 || associativity > lines)
+            throw new IllegalArgumentException("Associativity must be between 1 and " + lines + ", got " + associativity);
+        if (lines % associativity != 0)
+            throw new IllegalArgumentException(lines + " lines cannot be split into sets of " + associativity);
+        if (sectorSize <= 0 || blockSize % sectorSize != 0)
+            throw new IllegalArgumentException("Sector size must divide the block size " + blockSize + ", got " + sectorSize);
+        // Sector valid and dirty bits are kept per word in a 64-bit mask
+        if (sectorSize < blockSize && blockSize > 64)
+            throw new IllegalArgumentException("Sectored blocks can hold at most 64 words, got " + blockSize);
+
+        this.lines = lines;
+        this.blockSize = blockSize;
+        this.associativity = associativity;
+        this.numSets = lines / associativity;
+        this.sectorSize = sectorSize;
+
+        this.powerOfTwo = isPowerOfTwo(blockSize) && isPowerOfTwo(numSets);
+        this.offsetBits = Integer.numberOfTrailingZeros(blockSize);
+        this.indexBits = Integer.numberOfTrailingZeros(numSets);
+        this.offsetMask = blockSize - 1L;
+        this.setMask = numSets - 1L;
+    }
+
+    public long blockNumber(long address) {
+        return powerOfTwo ? address >>> offsetBits : Long.divideUnsigned(address, blockSize);
+    }
+
+    public int offset(long address) {
+        return (int) (powerOfTwo ? address & offsetMask : Long.remainderUnsigned(address, blockSize));
+    }
+
+    public int setIndex(long blockNumber) {
+        return (int) (powerOfTwo ? blockNumber & setMask : Long.remainderUnsigned(blockNumber, numSets));
+    }
+
+    public long tag(long blockNumber) {
+        return powerOfTwo ? blockNumber >>> indexBits : Long.divideUnsigned(blockNumber, numSets);
+    }
+
+    // Inverse of tag()/setIndex(), used to find where an evicted line belongs in memory
+    public long blockNumber(long tag, int setIndex) {
+        return powerOfTwo ? (tag << indexBits) | setIndex : tag * numSets + setIndex;
+    }
+
+    public long baseAddress(long blockNumber) {
+        return powerOfTwo ? blockNumber << offsetBits : blockNumber * blockSize;
+    }
+
+    // Words of the sector holding the offset (bit i = word i); the whole block when not sectored
+    public long sectorMask(int offset) {
+        if (sectorSize == blockSize)
+            return -1L;
+        int first = offset / sectorSize * sectorSize;
+        return ((1L << sectorSize) - 1) << first;
+    }
+
+    // Number of words selected by a mask; -1 stands for the whole block
+    public int wordCount(long mask) {
+        if (mask == -1L)
+            return blockSize;
+        return Long.bitCount(blockSize >= 64 ? mask : mask & ((1L << blockSize) - 1));
+    }
+
+    // e.g. "Tag: 5 bits | Index: 3 bits | Offset: 2 bits" for a 10-bit address space
+    public String describeBits(int addressBits) {
+        if (!powerOfTwo)
+            return "Non-power-of-two geometry: address split by division";
+        int tagBits = Math.max(0, addressBits - indexBits - offsetBits);
+        return String.format("Tag: %d bits | Index: %d bits | Offset: %d bits", tagBits, indexBits, offsetBits);
+    }
+
+    public boolean isPowerOfTwo() {
+        return powerOfTwo;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getAssociativity() {
+        return associativity;
+    }
+
+    public int getNumSets() {
+        return numSets;
+    }
+
+    public int getSectorSize() {
+        return sectorSize;
+    }
+
+    public boolean isSectored() {
+        return sectorSize < blockSize;
+    }
+
+    private static boolean isPowerOfTwo(int value) {
+        return (value & (value - 1)) == 0;
+    }
+}
@@ -1,11 +1,15 @@
 package cache_memory_simulator;
 
 public class CacheLine {
-    private int tag;
+    private long tag;
     private boolean valid;
     private String[] data;
     private int lineIndex;
     private boolean dirty;
+    // Bit i set = word i holds data. Write-validate and sector fills leave words out; a full line is all ones.
+    private long validWords = -1L;
+    // Bit i set = word i was written since the fill. In a sectored cache whole sectors are marked.
+    private long dirtyWords = 0;
 
     public CacheLine(int lineIndex, int blockSize) {
         this.valid = false;
@@ -19,11 +23,11 @@ public class CacheLine {
     }
 
     // Getters and setters
-    public int getTag() {
+    public long getTag() {
         return tag;
     }
 
-    public void setTag(int tag) {
+    public void setTag(long tag) {
         this.tag = tag;
     }
 
@@ -59,4 +63,25 @@ public class CacheLine {
     public void setDirty(boolean dirty) {
         this.dirty = dirty;
     }
+
+    public long getValidWords() {
+        return validWords;
+    }
+
+    public void setValidWords(long validWords) {
+        this.validWords = validWords;
+    }
+
+    public long getDirtyWords() {
+        return dirtyWords;
+    }
+
+    public void setDirtyWords(long dirtyWords) {
+        this.dirtyWords = dirtyWords;
+    }
+
+    public boolean hasWord(int offset) {
+        // Shifts are mod 64, so a full (all ones) mask also covers blocks wider than 64 words
+        return ((validWords >>> offset) & 1) != 0;
+    }
 }
@@ -1,21 +1,56 @@
 package cache_memory_simulator;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 public interface CacheMemory {
-    boolean read(int address);
+    // Addresses are unsigned 64-bit values
+    boolean read(long address);
+
+    boolean write(long address, String data);
 
-    boolean write(int address, String data);
+    // Functional warming: updates which blocks are cached (and dirty) like an access would, without
+    // counting it. Engines may skip moving data; this default simply performs the access.
+    default void warm(long address, boolean write) {
+        if (write)
+            write(address, TraceRunner.STORE_DATA);
+        else
+            read(address);
+    }
 
     CacheLine[] getLines();
 
-    int getHits();
+    long getHits();
 
-    int getMisses();
+    long getMisses();
 
     String getLastMissType();
 
     int getBlockSize();
 
+    CacheGeometry getGeometry();
+
     String getLastEvictionMessage();
 
     String getLastAccessDetails();
+
+    AllocationPolicy getAllocationPolicy();
+
+    // Sends any stores still held in the write-combining buffer to memory
+    void drainWriteBuffer();
+
+    // Stores merged into an already pending write-combining entry
+    long getCombinedStores();
+
+    // Memory words a sectored or partially filled cache did not transfer, compared with whole-block transfers
+    long getWordsSaved();
+
+    // Dirty lines written back to memory when evicted
+    long getWritebacks();
+
+    // Checkpoint support: lines, replacement state, counters and the compulsory-miss tracker (see Checkpoint)
+    void saveState(DataOutputStream out) throws IOException;
+
+    void restoreState(DataInputStream in) throws IOException;
 }
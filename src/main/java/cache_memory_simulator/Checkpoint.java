@@ -0,0 +1,176 @@
+package cache_memory_simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary snapshots of a cache together with its main memory. A checkpoint is a gzip stream of a
+ * small header followed by the memory and cache state; numbers are written as variable-length
+ * integers so mostly-small counters and tags stay compact.
+ * <p>
+ * Restoring needs a freshly built cache of the same type and geometry; everything else (policy
+ * choices such as the write policy) may differ, which is how one warmed-up state is forked into
+ * several experiments.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x434D5343; // "CMSC"
+    private static final int VERSION = 5;
+
+    private Checkpoint() {
+    }
+
+    public static void save(Path path, CacheMemory cache, Memory memory) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            save(out, cache, memory);
+        }
+    }
+
+    public static void restore(Path path, CacheMemory cache, Memory memory) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            restore(in, cache, memory);
+        }
+    }
+
+    public static void save(OutputStream target, CacheMemory cache, Memory memory) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(target, 1 << 16);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(cache.getClass().getSimpleName());
+        memory.saveState(out);
+        cache.saveState(out);
+        out.flush();
+        gzip.finish();
+    }
+
+    public static void restore(InputStream source, CacheMemory cache, Memory memory) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, 1 << 16), 1 << 16));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a cache checkpoint");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported checkpoint version " + version);
+        String kind = in.readUTF();
+        if (!kind.equals(cache.getClass().getSimpleName()))
+            throw new IOException("Checkpoint was taken from a " + kind + ", cannot restore into a " + cache.getClass().getSimpleName());
+        memory.restoreState(in);
+        cache.restoreState(in);
+    }
+
+    // In-memory snapshot, e.g. to fork several configurations from one warmed-up state
+    public static byte[] toBytes(CacheMemory cache, Memory memory) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            save(bytes, cache, memory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void fromBytes(byte[] snapshot, CacheMemory cache, Memory memory) {
+        try {
+            restore(new ByteArrayInputStream(snapshot), cache, memory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---- Encoding helpers shared by the cache and memory implementations ----
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        // Zig-zag so that small negative values (such as the -1 tag of an empty line) stay short
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    static void expect(DataInputStream in, long expected, String what) throws IOException {
+        long actual = readVarLong(in);
+        if (actual != expected)
+            throw new IOException("Checkpoint " + what + " is " + actual + " but the target has " + expected);
+    }
+
+    // Sorted and delta-encoded, so a dense set of block numbers costs about a byte per block
+    static void writeBlockSet(DataOutputStream out, Set<Long> blocks) throws IOException {
+        long[] sorted = new long[blocks.size()];
+        int i = 0;
+        for (long block : blocks)
+            sorted[i++] = block;
+        Arrays.sort(sorted);
+        writeVarLong(out, sorted.length);
+        long previous = 0;
+        for (long block : sorted) {
+            writeVarLong(out, block - previous);
+            previous = block;
+        }
+    }
+
+    static void readBlockSet(DataInputStream in, Set<Long> blocks) throws IOException {
+        blocks.clear();
+        long count = readVarLong(in);
+        long previous = 0;
+        for (long i = 0; i < count; i++) {
+            previous += readVarLong(in);
+            blocks.add(previous);
+        }
+    }
+
+    static void writeLines(DataOutputStream out, CacheLine[] lines) throws IOException {
+        writeVarLong(out, lines.length);
+        for (CacheLine line : lines) {
+            out.writeByte((line.isValid() ? 1 : 0) | (line.isDirty() ? 2 : 0));
+            writeVarLong(out, line.getTag());
+            writeVarLong(out, line.getValidWords());
+            writeVarLong(out, line.getDirtyWords());
+            String[] data = line.getData();
+            writeVarLong(out, data.length);
+            for (String word : data)
+                out.writeUTF(word == null ? "" : word);
+        }
+    }
+
+    static void readLines(DataInputStream in, CacheLine[] lines) throws IOException {
+        expect(in, lines.length, "line count");
+        for (CacheLine line : lines) {
+            int flags = in.readUnsignedByte();
+            line.setValid((flags & 1) != 0);
+            line.setDirty((flags & 2) != 0);
+            line.setTag(readVarLong(in));
+            line.setValidWords(readVarLong(in));
+            line.setDirtyWords(readVarLong(in));
+            String[] data = new String[(int) readVarLong(in)];
+            for (int i = 0; i < data.length; i++)
+                data[i] = in.readUTF();
+            line.setData(data);
+        }
+    }
+}
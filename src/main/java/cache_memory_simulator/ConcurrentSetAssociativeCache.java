@@ -0,0 +1,349 @@
+package cache_memory_simulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A set-associative cache that many threads can drive at once, e.g. for parallel trace replay.
+ * <p>
+ * Each set has its own {@link StampedLock}, and all replacement state (usage timestamps, the
+ * clock that orders them, the RANDOM generator and which blocks have been seen) is kept per set,
+ * under that set's lock. Accesses to different sets therefore never contend. Under FIFO and RANDOM a load hit
+ * changes nothing, so loads first try an optimistic read and take the lock only on a miss.
+ * Hit and miss totals are {@link LongAdder}s.
+ * <p>
+ * Details of an access come back in the {@link AccessResult} from {@link #access}. The
+ * {@link CacheMemory} read/write methods keep the last result per thread for getLast*().
+ * The cache uses write-allocate, with no write-combining and no sectors. RANDOM replacement draws
+ * from a seeded generator per set, so a set's victims depend only on the accesses to that set.
+ */
+public class ConcurrentSetAssociativeCache implements CacheMemory {
+    private static final int NONE = -1;
+
+    private final CacheLine[] lines;
+    private final Memory memory;
+    private final CacheGeometry geometry;
+    private final int blockSize;
+    private final int associativity;
+    private final ReplacementPolicy replacementPolicy;
+    private final WritePolicy writePolicy;
+
+    private final StampedLock[] setLocks;
+    // Guarded by the lock of the set they belong to
+    private final long[] usageTimestamps;
+    private final long[] setClocks;
+    private final long[] randomStates;
+    private final List<Set<Long>> seenBlocks;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writebacks = new LongAdder();
+
+    private final ThreadLocal<AccessResult> lastResult = new ThreadLocal<>();
+
+    public record AccessResult(boolean hit, String missType, long blockNumber, int lineIndex, String evictionMessage) {
+    }
+
+    public ConcurrentSetAssociativeCache(int size, int blockSize, int associativity, Memory memory,
+                                         ReplacementPolicy replacementPolicy, WritePolicy writePolicy) {
+        this.geometry = new CacheGeometry(size, blockSize, associativity);
+        this.blockSize = blockSize;
+        this.associativity = associativity;
+        this.memory = memory;
+        this.replacementPolicy = replacementPolicy;
+        this.writePolicy = writePolicy;
+
+        this.lines = new CacheLine[size];
+        for (int i = 0; i < size; i++)
+            lines[i] = new CacheLine(i, blockSize);
+
+        int numSets = geometry.getNumSets();
+        this.setLocks = new StampedLock[numSets];
+        this.setClocks = new long[numSets];
+        this.randomStates = new long[numSets];
+        this.seenBlocks = new ArrayList<>(numSets);
+        for (int set = 0; set < numSets; set++) {
+            setLocks[set] = new StampedLock();
+            // Odd multiplier, so every set starts from a distinct, non-zero state
+            randomStates[set] = (set + 1) * 0x9E3779B97F4A7C15L;
+            seenBlocks.add(new HashSet<>());
+        }
+        this.usageTimestamps = new long[size];
+    }
+
+    public AccessResult access(long address, boolean write, String data) {
+        long blockNumber = geometry.blockNumber(address);
+        int set = geometry.setIndex(blockNumber);
+        long tag = geometry.tag(blockNumber);
+        int startIndex = set * associativity;
+        StampedLock lock = setLocks[set];
+
+        if (!write && replacementPolicy != ReplacementPolicy.LRU) {
+            long stamp = lock.tryOptimisticRead();
+            int lineIndex = find(startIndex, tag);
+            if (lineIndex != NONE && lock.validate(stamp)) {
+                hits.increment();
+                return new AccessResult(true, "Hit", blockNumber, lineIndex, "");
+            }
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int lineIndex = find(startIndex, tag);
+            boolean hit = lineIndex != NONE;
+            String missType = "Hit";
+            String evictionMessage = "";
+            if (hit) {
+                hits.increment();
+                if (replacementPolicy == ReplacementPolicy.LRU)
+                    usageTimestamps[lineIndex] = ++setClocks[set];
+            } else {
+                misses.increment();
+                missType = seenBlocks.get(set).add(blockNumber) ? "Compulsory" : "Conflict";
+                lineIndex = findVictimIndex(set, startIndex);
+                evictionMessage = fill(lines[lineIndex], set, blockNumber);
+                usageTimestamps[lineIndex] = ++setClocks[set];
+            }
+
+            if (write) {
+                CacheLine line = lines[lineIndex];
+                line.getData()[geometry.offset(address)] = data;
+                if (writePolicy == WritePolicy.WRITE_THROUGH)
+                    memory.write(address, data);
+                else {
+                    line.setDirty(true);
+                    line.setDirtyWords(-1L);
+                }
+            }
+            return new AccessResult(hit, missType, blockNumber, lineIndex, evictionMessage);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int find(int startIndex, long tag) {
+        for (int i = startIndex; i < startIndex + associativity; i++) {
+            CacheLine line = lines[i];
+            if (line.isValid() && line.getTag() == tag)
+                return i;
+        }
+        return NONE;
+    }
+
+    private int findVictimIndex(int set, int startIndex) {
+        int endIndex = startIndex + associativity;
+        for (int i = startIndex; i < endIndex; i++)
+            if (!lines[i].isValid())
+                return i;
+
+        if (replacementPolicy == ReplacementPolicy.RANDOM)
+            return startIndex + nextRandom(set, associativity);
+
+        int victimIndex = startIndex;
+        for (int i = startIndex + 1; i < endIndex; i++)
+            if (usageTimestamps[i] < usageTimestamps[victimIndex])
+                victimIndex = i;
+        return victimIndex;
+    }
+
+    // Uniform in [0, bound), from the set's xorshift64* generator (as AbstractCache.nextRandom)
+    private int nextRandom(int set, int bound) {
+        long state = randomStates[set];
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        randomStates[set] = state;
+        return (int) (((state * 0x2545F4914F6CDD1DL) >>> 33) % bound);
+    }
+
+    // Writes back the line if dirty and loads the block into it; returns the eviction message
+    private String fill(CacheLine line, int set, long blockNumber) {
+        String message = "";
+        if (line.isValid() && line.isDirty()) {
+            long oldBlockNumber = geometry.blockNumber(line.getTag(), set);
+            long oldBaseAddress = geometry.baseAddress(oldBlockNumber);
+            memory.writeBlock(oldBaseAddress, line.getData(), -1L);
+            writebacks.increment();
+            message = "Write-Back: Evicted dirty block " + oldBlockNumber + " to memory and wrote to address " + oldBaseAddress;
+        }
+        String[] blockData = new String[blockSize];
+        memory.readBlock(geometry.baseAddress(blockNumber), blockData, -1L);
+        line.setData(blockData);
+        line.setTag(geometry.tag(blockNumber));
+        line.setValid(true);
+        line.setDirty(false);
+        line.setValidWords(-1L);
+        line.setDirtyWords(0);
+        return message;
+    }
+
+    @Override
+    public boolean read(long address) {
+        AccessResult result = access(address, false, null);
+        lastResult.set(result);
+        return result.hit();
+    }
+
+    @Override
+    public boolean write(long address, String data) {
+        AccessResult result = access(address, true, data);
+        lastResult.set(result);
+        return result.hit();
+    }
+
+    // The lines themselves; reading them while other threads access the cache gives no consistent snapshot
+    @Override
+    public CacheLine[] getLines() {
+        return lines;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String getLastMissType() {
+        AccessResult result = lastResult.get();
+        return result == null ? null : result.missType();
+    }
+
+    @Override
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public String getLastEvictionMessage() {
+        AccessResult result = lastResult.get();
+        return result == null ? "" : result.evictionMessage();
+    }
+
+    @Override
+    public String getLastAccessDetails() {
+        AccessResult result = lastResult.get();
+        if (result == null) return "";
+        long blockNumber = result.blockNumber();
+        return String.format("[Block: %d | Set: %d | Tag: %d]", blockNumber, geometry.setIndex(blockNumber), geometry.tag(blockNumber));
+    }
+
+    @Override
+    public AllocationPolicy getAllocationPolicy() {
+        return AllocationPolicy.WRITE_ALLOCATE;
+    }
+
+    @Override
+    public void drainWriteBuffer() {
+    }
+
+    @Override
+    public long getCombinedStores() {
+        return 0;
+    }
+
+    @Override
+    public long getWordsSaved() {
+        return 0;
+    }
+
+    @Override
+    public long getWritebacks() {
+        return writebacks.sum();
+    }
+
+    // Same layout as a SetAssociativeCache checkpoint, except that the clock and random state are
+    // saved per set. Taking every set lock (in set order) makes the checkpoint a consistent snapshot.
+    @Override
+    public void saveState(DataOutputStream out) throws IOException {
+        long[] stamps = lockAll();
+        try {
+            Checkpoint.writeVarLong(out, blockSize);
+            Checkpoint.writeVarLong(out, associativity);
+            Checkpoint.writeLines(out, lines);
+            for (long timestamp : usageTimestamps)
+                Checkpoint.writeVarLong(out, timestamp);
+            for (long setClock : setClocks)
+                Checkpoint.writeVarLong(out, setClock);
+            Checkpoint.writeVarLong(out, hits.sum());
+            Checkpoint.writeVarLong(out, misses.sum());
+            Set<Long> allSeen = new HashSet<>();
+            for (Set<Long> seen : seenBlocks)
+                allSeen.addAll(seen);
+            Checkpoint.writeBlockSet(out, allSeen);
+            Checkpoint.writeVarLong(out, 0); // words saved
+            for (long state : randomStates)
+                Checkpoint.writeVarLong(out, state);
+            Checkpoint.writeVarLong(out, writebacks.sum());
+            Checkpoint.writeVarLong(out, 0); // no pending write-combining entries
+            Checkpoint.writeVarLong(out, 0); // no combined stores
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    @Override
+    public void restoreState(DataInputStream in) throws IOException {
+        long[] stamps = lockAll();
+        try {
+            Checkpoint.expect(in, blockSize, "block size");
+            Checkpoint.expect(in, associativity, "associativity");
+            Checkpoint.readLines(in, lines);
+            for (int i = 0; i < usageTimestamps.length; i++)
+                usageTimestamps[i] = Checkpoint.readVarLong(in);
+            for (int set = 0; set < setClocks.length; set++)
+                setClocks[set] = Checkpoint.readVarLong(in);
+            restore(hits, Checkpoint.readVarLong(in));
+            restore(misses, Checkpoint.readVarLong(in));
+            Set<Long> allSeen = new HashSet<>();
+            Checkpoint.readBlockSet(in, allSeen);
+            for (Set<Long> seen : seenBlocks)
+                seen.clear();
+            for (long blockNumber : allSeen)
+                seenBlocks.get(geometry.setIndex(blockNumber)).add(blockNumber);
+            Checkpoint.readVarLong(in); // words saved
+            for (int set = 0; set < randomStates.length; set++)
+                randomStates[set] = Checkpoint.readVarLong(in);
+            restore(writebacks, Checkpoint.readVarLong(in));
+            if (Checkpoint.readVarLong(in) != 0)
+                throw new IOException("Checkpoint has pending write-combining entries but the cache has no write-combining buffer");
+            Checkpoint.readVarLong(in);
+        } finally {
+            unlockAll(stamps);
+        }
+        lastResult.remove();
+    }
+
+    private long[] lockAll() {
+        long[] stamps = new long[setLocks.length];
+        for (int set = 0; set < setLocks.length; set++)
+            stamps[set] = setLocks[set].writeLock();
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int set = setLocks.length - 1; set >= 0; set--)
+            setLocks[set].unlockWrite(stamps[set]);
+    }
+
+    private static void restore(LongAdder counter, long value) {
+        counter.reset();
+        counter.add(value);
+    }
+}
@@ -1,11 +1,23 @@
 package cache_memory_simulator;
 
+import eu.hansolo.tilesfx.Tile;
+import eu.hansolo.tilesfx.TileBuilder;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.TableRow;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 public class Controller {
     @FXML
@@ -13,6 +25,8 @@ public class Controller {
     @FXML
     private TextField blockSizeField;
     @FXML
+    private TextField sectorSizeField;
+    @FXML
     private TextField addressField;
     @FXML
     private TextField writeDataField;
@@ -23,6 +37,10 @@ public class Controller {
     @FXML
     private Label hitRatioLabel;
     @FXML
+    private Label trafficLabel;
+    @FXML
+    private Label addressSplitLabel;
+    @FXML
     private Slider kSlider;
 
     @FXML
@@ -64,10 +82,46 @@ public class Controller {
     @FXML
     public ComboBox<Integer> memorySizeBox;
 
+    @FXML
+    private ComboBox<AllocationPolicy> allocationBox;
+    @FXML
+    private TextField writeCombiningField;
+
+    @FXML
+    private TextField workloadSpecField;
+    @FXML
+    private TextField playCountField;
+
+    @FXML
+    private Label historyLabel;
+    @FXML
+    private VBox chartBox;
+    @FXML
+    private TextField jumpField;
+
     private TableColumn<CacheLine, String> setCol;
 
     private Memory memory;
-    private CacheMemory cache;
+    private AbstractCache cache;
+    // Every access made in the UI, so it can be stepped back and forward
+    private AccessHistory history;
+    // Why the last Initialize failed, shown when an access is attempted without a cache
+    private String cacheError;
+
+    // Workload currently being played back, and how many of its accesses have been replayed
+    private AddressStream playback;
+    private long playbackPosition;
+
+    // Above this many accesses per Play, only a summary is logged
+    private static final int PLAYBACK_LOG_LIMIT = 64;
+
+    // Hit and miss ratio per CHART_WINDOW accesses, for the last CHART_POINTS windows
+    private static final int CHART_WINDOW = 100;
+    private static final int CHART_POINTS = 40;
+    private WindowedMetrics metrics;
+    private long chartedWindows;
+    private final XYChart.Series<String, Number> hitSeries = new XYChart.Series<>();
+    private final XYChart.Series<String, Number> missSeries = new XYChart.Series<>();
 
 
     @FXML
@@ -75,6 +129,22 @@ public class Controller {
         memorySizeBox.getItems().addAll(256, 512, 1024, 2048);
         memorySizeBox.getSelectionModel().selectFirst();
 
+        allocationBox.getItems().addAll(AllocationPolicy.values());
+        allocationBox.getSelectionModel().selectFirst();
+
+        hitSeries.setName("Hit ratio");
+        missSeries.setName("Miss ratio");
+        Tile ratioTile = TileBuilder.create()
+                .skinType(Tile.SkinType.SMOOTHED_CHART)
+                .title("Per " + CHART_WINDOW + " accesses")
+                .minValue(0)
+                .maxValue(1)
+                .build();
+        // Set on the tile, since TileBuilder.create() returns a raw builder
+        ratioTile.setSeries(List.of(hitSeries, missSeries));
+        VBox.setVgrow(ratioTile, Priority.ALWAYS);
+        chartBox.getChildren().add(ratioTile);
+
         cacheTypeGroup = new ToggleGroup();
         directMappedRadio.setToggleGroup(cacheTypeGroup);
         setAssociativeRadio.setToggleGroup(cacheTypeGroup);
@@ -178,19 +248,46 @@ public class Controller {
         if (writeBackRadio.isSelected())
             writePolicy = WritePolicy.WRITE_BACK;
 
-        if (directMappedRadio.isSelected()) {
-            cache = new DirectMappedCache(cacheSize, blockSize, memory, writePolicy);
-            log("Initialized Direct Mapped Cache (" + writePolicy + ")");
-        } else if (setAssociativeRadio.isSelected()) {
-            int k = (int) kSlider.getValue();
-            cache = new SetAssociativeCache(cacheSize, blockSize, k, memory, policy, writePolicy);
-            log("Initialized " + k + "-Way Set Associative Cache (" + policy + ") (" + writePolicy + ").");
-        } else if (fullyAssociativeRadio.isSelected()) {
-            // Fully Associative is just Set Associative where K = CacheSize
-            // and NumSets = 1
-            cache = new SetAssociativeCache(cacheSize, blockSize, cacheSize, memory, policy, writePolicy);
-            log("Initialized Fully Associative Cache (" + policy + ") (" + writePolicy + ").");
+        AllocationPolicy allocation = allocationBox.getValue();
+
+        try {
+            int combining = Integer.parseInt(writeCombiningField.getText().trim());
+            // An empty sector size means one sector per line
+            String sectorText = sectorSizeField.getText().trim();
+            int sectorSize = sectorText.isEmpty() ? blockSize : Integer.parseInt(sectorText);
+            if (directMappedRadio.isSelected()) {
+                cache = new DirectMappedCache(cacheSize, blockSize, memory, writePolicy, allocation, combining, sectorSize);
+                log("Initialized Direct Mapped Cache (" + writePolicy + ") (" + allocation + ")");
+            } else if (setAssociativeRadio.isSelected()) {
+                int k = (int) kSlider.getValue();
+                cache = new SetAssociativeCache(cacheSize, blockSize, k, memory, policy, writePolicy, allocation, combining, sectorSize);
+                log("Initialized " + k + "-Way Set Associative Cache (" + policy + ") (" + writePolicy + ") (" + allocation + ").");
+            } else if (fullyAssociativeRadio.isSelected()) {
+                // One set holding every line; the tag index keeps lookups O(1) however many lines there are
+                cache = new FullyAssociativeCache(cacheSize, blockSize, memory, policy, writePolicy, allocation, combining, sectorSize);
+                log("Initialized Fully Associative Cache (" + policy + ") (" + writePolicy + ") (" + allocation + ").");
+            }
+            if (combining > 0)
+                log("Write-combining buffer: " + combining + " entries.");
+            if (sectorSize < blockSize)
+                log("Sectored lines: " + blockSize / sectorSize + " sectors of " + sectorSize + " words.");
+        } catch (IllegalArgumentException e) {
+            cache = null;
+            history = null;
+            cacheError = "Invalid cache geometry: " + e.getMessage();
+            log("[!] Error: " + cacheError);
+            return;
         }
+        cacheError = null;
+        history = new AccessHistory(cache, memory, AccessHistory.DEFAULT_SNAPSHOT_INTERVAL);
+        updateHistoryLabel();
+        rebuildMetrics();
+
+        // Bits needed to address the selected memory size
+        int addressBits = 64 - Long.numberOfLeadingZeros(selectedMemorySize - 1L);
+        String bitSplit = cache.getGeometry().describeBits(addressBits);
+        addressSplitLabel.setText(bitSplit);
+        log("Address split (" + addressBits + "-bit addresses): " + bitSplit);
 
         boolean isSetAssociative = setAssociativeRadio.isSelected();
         boolean columnExists = cacheTable.getColumns().contains(setCol);
@@ -209,34 +306,16 @@ public class Controller {
 
     @FXML
     private void handleWrite() {
+        if (!requireCache()) return;
         try {
-            int address = Integer.parseInt(addressField.getText());
+            long address = parseAddress();
             String data = writeDataField.getText();
-            boolean isWriteBack = writeBackRadio.isSelected();
 
-            boolean hit = cache.write(address, data);
+            performWrite(address, data, true);
 
             cacheTable.refresh();
             memoryTable.refresh();
             updateCacheStats();
-
-            String locationDetails = cache.getLastAccessDetails();
-
-            if (hit) {
-                log("✅ HIT: Wrote '" + data + "' to " + address + ". " + locationDetails);
-                if (isWriteBack) log("       -> Cache marked DIRTY. Memory NOT updated.");
-                else log("       -> Cache & Memory updated (Write-Through).");
-            } else {
-                log("❌ MISS: Address " + address + " " + locationDetails);
-                log("       -> Loaded block. " + (isWriteBack ? "Marked DIRTY." : "Updated Memory."));
-            }
-
-            String evictionMsg = cache.getLastEvictionMessage();
-            if (evictionMsg != null && !evictionMsg.isEmpty()) {
-                log("       [!] " + evictionMsg);
-            }
-            log("------------------------------------------------------");
-
         } catch (NumberFormatException e) {
             log("[!] Error: Please enter valid numbers for Address.");
         }
@@ -244,37 +323,254 @@ public class Controller {
 
     @FXML
     private void handleRead() {
+        if (!requireCache()) return;
         try {
-            int address = Integer.parseInt(addressField.getText());
-            boolean hit = cache.read(address);
+            long address = parseAddress();
+
+            performRead(address, true);
 
             cacheTable.refresh();
             memoryTable.refresh();
             updateCacheStats();
+        } catch (NumberFormatException e) {
+            log("[!] Error: Please enter a valid number for Address.");
+        }
+    }
 
-            cacheTable.refresh();
-            memoryTable.refresh();
+    // Logs why there is no cache to access, if there is none
+    private boolean requireCache() {
+        if (cache != null) return true;
+        log("[!] Error: " + (cacheError != null ? cacheError + ". Fix the configuration and initialize again."
+                : "Initialize the cache first."));
+        return false;
+    }
 
-            String locationDetails = cache.getLastAccessDetails();
+    // Accepts decimal or 0x-prefixed hexadecimal addresses over the whole unsigned 64-bit range
+    private long parseAddress() {
+        String text = addressField.getText().trim();
+        if (text.startsWith("0x") || text.startsWith("0X"))
+            return Long.parseUnsignedLong(text.substring(2), 16);
+        return Long.parseUnsignedLong(text);
+    }
 
-            if (hit) {
-                log("✅ HIT: Address " + address + " found. " + locationDetails);
-            } else {
-                String missType = cache.getLastMissType();
-                log("❌ MISS (" + missType + "): Address " + address + " not found. " + locationDetails);
-                log("       -> Loaded Block " + (address / cache.getBlockSize()) + " from memory.");
+    private boolean performWrite(long address, String data, boolean verbose) {
+        boolean hit = history.write(address, data);
+        recordMetrics(hit);
+        if (!verbose) return hit;
+
+        boolean isWriteBack = writeBackRadio.isSelected();
+        String locationDetails = cache.getLastAccessDetails();
+
+        if (hit) {
+            log("✅ HIT: Wrote '" + data + "' to " + Long.toUnsignedString(address) + ". " + locationDetails);
+            if (isWriteBack) log("       -> Cache marked DIRTY. Memory NOT updated.");
+            else log("       -> Cache & Memory updated (Write-Through).");
+        } else {
+            log("❌ MISS: Address " + Long.toUnsignedString(address) + " " + locationDetails);
+            switch (cache.getAllocationPolicy()) {
+                case NO_WRITE_ALLOCATE -> log("       -> Not allocated. Wrote straight to Memory.");
+                case WRITE_VALIDATE -> log("       -> Allocated without fetch. " + (isWriteBack ? "Marked DIRTY." : "Updated Memory."));
+                default -> log("       -> Loaded block. " + (isWriteBack ? "Marked DIRTY." : "Updated Memory."));
             }
-            String evictionMsg = cache.getLastEvictionMessage();
-            if (evictionMsg != null && !evictionMsg.isEmpty()) {
-                log("       [!]  " + evictionMsg);
+        }
+
+        String evictionMsg = cache.getLastEvictionMessage();
+        if (evictionMsg != null && !evictionMsg.isEmpty()) {
+            log("       [!] " + evictionMsg);
+        }
+        log("------------------------------------------------------");
+        return hit;
+    }
+
+    private boolean performRead(long address, boolean verbose) {
+        boolean hit = history.read(address);
+        recordMetrics(hit);
+        if (!verbose) return hit;
+
+        String locationDetails = cache.getLastAccessDetails();
+
+        if (hit) {
+            log("✅ HIT: Address " + Long.toUnsignedString(address) + " found. " + locationDetails);
+        } else {
+            String missType = cache.getLastMissType();
+            log("❌ MISS (" + missType + "): Address " + Long.toUnsignedString(address) + " not found. " + locationDetails);
+            log("       -> Loaded Block " + cache.getGeometry().blockNumber(address) + " from memory.");
+        }
+        String evictionMsg = cache.getLastEvictionMessage();
+        if (evictionMsg != null && !evictionMsg.isEmpty()) {
+            log("       [!]  " + evictionMsg);
+        }
+        log("------------------------------------------------------");
+        return hit;
+    }
+
+    private void recordMetrics(boolean hit) {
+        if (metrics.record(hit)) {
+            long window = metrics.getClosedWindows() - 1;
+            log("[~] Phase change: accesses from " + window * CHART_WINDOW + " behave unlike the previous phase (hit ratio "
+                    + String.format("%.2f", metrics.getHitRatio(window)) + ").");
+        }
+    }
+
+    // The windows describe the accesses up to the history's position, so they are rebuilt after moving through it
+    private void rebuildMetrics() {
+        metrics = new WindowedMetrics(cache, CHART_WINDOW);
+        history.replayInto(metrics);
+        chartedWindows = 0;
+        hitSeries.getData().clear();
+        missSeries.getData().clear();
+    }
+
+    // Adds the windows closed since the last update to the chart, dropping the oldest points
+    private void updateChart() {
+        for (long w = Math.max(chartedWindows, metrics.getFirstRetainedWindow()); w < metrics.getClosedWindows(); w++) {
+            String label = String.valueOf(w * CHART_WINDOW);
+            hitSeries.getData().add(new XYChart.Data<>(label, metrics.getHitRatio(w)));
+            missSeries.getData().add(new XYChart.Data<>(label, metrics.getMissRatio(w)));
+        }
+        chartedWindows = metrics.getClosedWindows();
+        for (XYChart.Series<String, Number> series : List.of(hitSeries, missSeries))
+            if (series.getData().size() > CHART_POINTS)
+                series.getData().remove(0, series.getData().size() - CHART_POINTS);
+    }
+
+    @FXML
+    private void loadWorkload() {
+        closePlayback();
+        try {
+            playback = Workloads.fromSpec(workloadSpecField.getText());
+            playbackPosition = 0;
+            log("Loaded workload '" + workloadSpecField.getText().trim() + "'");
+        } catch (IllegalArgumentException e) {
+            playback = null;
+            log("[!] Error: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void loadTrace() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Open Address Trace");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Dinero traces", "*.din", "*.din.gz"),
+                new FileChooser.ExtensionFilter("Valgrind lackey traces", "*.txt", "*.log", "*.gz", "*"));
+        File file = chooser.showOpenDialog(logArea.getScene().getWindow());
+        if (file == null) return;
+
+        closePlayback();
+        try {
+            playback = TraceReader.open(file.toPath());
+            playbackPosition = 0;
+            log("Loaded trace '" + file.getName() + "'");
+        } catch (IOException | IllegalArgumentException e) {
+            log("[!] Error: Could not open trace: " + e.getMessage());
+        }
+    }
+
+    private void closePlayback() {
+        if (playback instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log("[!] Error: " + e.getMessage());
             }
-            log("------------------------------------------------------");
+        }
+        playback = null;
+    }
+
+    @FXML
+    private void handleStep() {
+        playWorkload(1);
+    }
 
+    @FXML
+    private void handlePlay() {
+        try {
+            playWorkload(Integer.parseInt(playCountField.getText()));
         } catch (NumberFormatException e) {
-            log("[!] Error: Please enter a valid number for Address.");
+            log("[!] Error: Please enter a valid number of accesses to play.");
         }
     }
 
+    private void playWorkload(int count) {
+        if (cache == null) {
+            log("[!] Error: Initialize the cache before playing a workload.");
+            return;
+        }
+        if (playback == null) {
+            log("[!] Error: Load a workload first.");
+            return;
+        }
+
+        boolean verbose = count <= PLAYBACK_LOG_LIMIT;
+        int played = 0, hits = 0;
+        try {
+            while (played < count && playback.hasNext()) {
+                long address = playback.nextLong();
+                playbackPosition++;
+                boolean hit = playback.isWrite()
+                        ? performWrite(address, TraceRunner.STORE_DATA, verbose)
+                        : performRead(address, verbose);
+                if (hit) hits++;
+                played++;
+            }
+        } catch (UncheckedIOException e) {
+            log("[!] Error: " + e.getCause().getMessage() + ". Playback stopped.");
+            closePlayback();
+        }
+
+        if (!verbose)
+            log("Played " + played + " accesses (" + hits + " hits), now at access " + playbackPosition + ".");
+        if (playback != null && !playback.hasNext())
+            log("Workload finished after " + playbackPosition + " accesses.");
+
+        cacheTable.refresh();
+        memoryTable.refresh();
+        updateCacheStats();
+    }
+
+    @FXML
+    private void handleStepBack() {
+        if (history == null || !history.canStepBack()) return;
+        history.stepBack();
+        rebuildMetrics();
+        showHistoryPosition();
+    }
+
+    @FXML
+    private void handleStepForward() {
+        if (history == null || !history.canStepForward()) return;
+        history.stepForward();
+        rebuildMetrics();
+        showHistoryPosition();
+    }
+
+    @FXML
+    private void handleJump() {
+        if (history == null) {
+            log("[!] Error: Initialize the cache first.");
+            return;
+        }
+        try {
+            history.jumpTo(Integer.parseInt(jumpField.getText().trim()));
+            rebuildMetrics();
+            showHistoryPosition();
+        } catch (NumberFormatException e) {
+            log("[!] Error: Please enter a valid access number.");
+        }
+    }
+
+    private void showHistoryPosition() {
+        log("Moved to access " + history.getPosition() + " of " + history.getLength() + ".");
+        cacheTable.refresh();
+        memoryTable.refresh();
+        updateCacheStats();
+    }
+
+    private void updateHistoryLabel() {
+        historyLabel.setText(history == null ? "Access 0 / 0" : "Access " + history.getPosition() + " / " + history.getLength());
+    }
+
     private int getCacheSize() {
         return Integer.parseInt(cacheSizeField.getText());
     }
@@ -289,7 +585,7 @@ public class Controller {
     }
 
     private void updateCacheStats() {
-        int totalAccesses = cache.getHits() + cache.getMisses();
+        long totalAccesses = cache.getHits() + cache.getMisses();
 
         hitLabel.setText("HITS: " + cache.getHits());
         missLabel.setText("MISSES: " + cache.getMisses());
@@ -304,6 +600,11 @@ public class Controller {
         hitRatioLabel.setText(String.format("HIT RATIO: %.2f%%", hitRatioPercent));
         hitRatioLabel.setStyle("-fx-text-fill: green; -fx-font-weight: bold;");
 
+        trafficLabel.setText("Memory traffic: " + memory.getTrafficSummary() + ", combined stores: " + cache.getCombinedStores()
+                + ", bytes saved: " + cache.getWordsSaved() * Memory.WORD_BYTES + ", writebacks: " + cache.getWritebacks());
+        updateHistoryLabel();
+        updateChart();
+
     }
 
     private ReplacementPolicy getReplacementPolicy() {
@@ -0,0 +1,56 @@
+package cache_memory_simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads Dinero III/IV "din" traces: one access per line, {@code <label> <hex address> [size]}.
+ * Labels are 0 = data read, 1 = data write, 2 = instruction fetch, 3 = unknown access (treated as
+ * a read) and 4 = cache flush (ignored). The optional size field is in decimal bytes; without it
+ * an access is one byte.
+ */
+public class DineroTraceReader extends TraceReader {
+    private final boolean includeInstructions;
+
+    public DineroTraceReader(InputStream in, boolean includeInstructions) {
+        this(in, includeInstructions, Memory.WORD_BYTES);
+    }
+
+    public DineroTraceReader(InputStream in, boolean includeInstructions, int wordBytes) {
+        super(in, wordBytes);
+        this.includeInstructions = includeInstructions;
+    }
+
+    @Override
+    protected boolean parseRecord() throws IOException {
+        skipBlanks();
+        int c = peek();
+        if (c < 0)
+            return false;
+        if (c == '\n' || c == '\r' || c == '#') {
+            skipLine();
+            return true;
+        }
+
+        long label = readDecimal();
+        skipBlanks();
+        long address = readHex();
+        skipBlanks();
+        int next = peek();
+        long size = next >= '0' && next <= '9' ? readDecimal() : 1;
+
+        switch ((int) label) {
+            case 0, 3 -> emit(address, size, false);
+            case 1 -> emit(address, size, true);
+            case 2 -> {
+                if (includeInstructions) emit(address, size, false);
+            }
+            case 4 -> {
+            }
+            default -> throw malformed("unknown access label " + label);
+        }
+        // After the label check, so an error reports the line it is on
+        skipLine();
+        return true;
+    }
+}
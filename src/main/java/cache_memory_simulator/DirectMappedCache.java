@@ -1,181 +1,57 @@
 package cache_memory_simulator;
 
-import java.util.HashSet;
-import java.util.Set;
-
-public class DirectMappedCache implements CacheMemory {
-    private CacheLine[] lines;
-    private Memory memory;
-    private int blockSize;
-    private int hits = 0;
-    private int misses = 0;
-    private Set<Integer> seenBlocks = new HashSet<>();
-    private String lastMissType;
-    private WritePolicy writePolicy;
-    private String lastEvictionMessage = "";
-
-    private int lastBlockNumber;
-    private int lastLineIndex;
-    private int lastTag;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 
+public class DirectMappedCache extends AbstractCache {
 
     public DirectMappedCache(int size, int blockSize, Memory memory, WritePolicy writePolicy) {
-        lines = new CacheLine[size];
-        for (int i = 0; i < size; i++)
-            lines[i] = new CacheLine(i, blockSize);
-        this.blockSize = blockSize;
-        this.memory = memory;
-        this.writePolicy = writePolicy;
-    }
-
-    public boolean read(int address) {
-        this.lastBlockNumber = address / blockSize;
-        this.lastLineIndex = (address / blockSize) % lines.length;
-        this.lastTag = lastBlockNumber / lines.length;
-
-        CacheLine line = lines[lastLineIndex];
-        int offset = address % blockSize; // position within the block
-        if (line.isValid() && line.getTag() == lastTag) {
-            hits++;
-            return true;
-        }
-
-        // DirectMappedCache miss - fetch entire block from memory
-        misses++;
-        // Check if the current occupant is dirty before kicking it out
-        if (line.isValid() && line.isDirty()) {
-            flushDirtyLine(line, lastLineIndex);
-        }
-        boolean isCompulsory = !seenBlocks.contains(lastBlockNumber);
-
-        String[] blockData = new String[blockSize];
-        for (int i = 0; i < blockSize; i++) {
-            int memAddress = lastBlockNumber * blockSize + i;
-            if (memAddress < memory.getSize()) {
-                blockData[i] = memory.read(memAddress);
-            } else {
-                blockData[i] = ""; // empty string for out-of-bounds
-            }
-        }
-        line.setTag(lastTag);
-        line.setValid(true);
-        line.setDirty(false); // New data is clean (matches memory)
-        line.setData(blockData);
-
-        seenBlocks.add(lastBlockNumber);
-
-        // store type of miss for later use
-        if (isCompulsory)
-            lastMissType = "Compulsory";
-        else lastMissType = "Conflict";
-
-
-        return false;
-
+        this(size, blockSize, memory, writePolicy, AllocationPolicy.WRITE_ALLOCATE, 0, blockSize);
     }
 
-    public boolean write(int address, String data) {
-        this.lastEvictionMessage = "";
-        this.lastBlockNumber = address / blockSize;
-        this.lastLineIndex = (address / blockSize) % lines.length;
-        this.lastTag = lastBlockNumber / lines.length;
-
-        CacheLine line = lines[lastLineIndex];
-        int offset = address % blockSize;
-
-        if (line.isValid() && line.getTag() == lastTag) {
-            hits++;
-            line.getData()[offset] = data;
-
-            // Check policy
-            if (writePolicy == WritePolicy.WRITE_THROUGH)
-                memory.write(address, data); // Write immediately
-            else
-                line.setDirty(true);
-            lastMissType = "Hit";
-            return true;
-        }
-
-        misses++;
-
-        // Evict old dirty line if necessary
-        if (line.isValid() && line.isDirty())
-            flushDirtyLine(line, lastLineIndex);
-
-        boolean isCompulsory = !seenBlocks.contains(lastBlockNumber);
-
-        String[] blockData = new String[blockSize];
-        for (int i = 0; i < blockSize; i++) {
-            int memAddress = lastBlockNumber * blockSize + i;
-            if (memAddress < memory.getSize()) {
-                blockData[i] = memory.read(memAddress);
-            } else {
-                blockData[i] = "";
-            }
-        }
-
-        line.setTag(lastTag);
-        line.setValid(true);
-        line.setData(blockData);
-
-        line.getData()[offset] = data;
-        if (writePolicy == WritePolicy.WRITE_THROUGH)
-            memory.write(address, data);
-        else
-            line.setDirty(true); // Modified the loaded block, but haven't sent to memory yet
-
-        seenBlocks.add(lastBlockNumber);
-        if (isCompulsory)
-            lastMissType = "Compulsory";
-        else
-            lastMissType = "Conflict";
-
-        return false;
+    public DirectMappedCache(int size, int blockSize, Memory memory, WritePolicy writePolicy,
+                             AllocationPolicy allocationPolicy, int writeCombiningEntries, int sectorSize) {
+        super(new CacheGeometry(size, blockSize, 1, sectorSize), memory, writePolicy, allocationPolicy, writeCombiningEntries);
     }
 
-
-    public CacheLine[] getLines() {
-        return lines;
+    @Override
+    protected int findLine(long blockNumber) {
+        // Each block can only live in one line
+        int lineIndex = geometry.setIndex(blockNumber);
+        CacheLine line = lines[lineIndex];
+        if (line.isValid() && line.getTag() == geometry.tag(blockNumber))
+            return lineIndex;
+        return NONE;
     }
 
-    public int getHits() {
-        return hits;
+    @Override
+    protected int findVictimIndex(long blockNumber) {
+        return geometry.setIndex(blockNumber);
     }
 
-    public int getMisses() {
-        return misses;
+    @Override
+    protected void onHit(int lineIndex) {
     }
 
-    public int getBlockSize() {
-        return blockSize;
+    @Override
+    protected void onFill(int lineIndex, long blockNumber) {
     }
 
-    public String getLastMissType() {
-        return lastMissType;
+    @Override
+    protected long blockNumberOf(int lineIndex) {
+        return geometry.blockNumber(lines[lineIndex].getTag(), lineIndex);
     }
 
-    private void flushDirtyLine(CacheLine line, int lineIndex) {
-        int oldBlockNumber = (line.getTag() * lines.length) + lineIndex;
-        int oldBaseAddress = oldBlockNumber * blockSize;
-
-        // Write the entire block back to memory
-        String[] data = line.getData();
-        for (int i = 0; i < blockSize; i++) {
-            if (oldBaseAddress + i < memory.getSize()) {
-                memory.write(oldBaseAddress + i, data[i]);
-            }
-        }
-        this.lastEvictionMessage = "Write-Back: Evicted dirty  block " + oldBlockNumber + " to memory and wrote to address " + oldBaseAddress;
+    @Override
+    protected void saveReplacementState(DataOutputStream out) {
     }
 
     @Override
-    public String getLastEvictionMessage() {
-        return lastEvictionMessage;
+    protected void restoreReplacementState(DataInputStream in) {
     }
 
     @Override
     public String getLastAccessDetails() {
-        return String.format("[Block: %d | Line: %d | Tag: %d]", lastBlockNumber, lastLineIndex, lastTag);
+        return String.format("[Block: %d | Line: %d | Tag: %d]", lastBlockNumber, geometry.setIndex(lastBlockNumber), lastTag);
     }
 }
-
@@ -0,0 +1,180 @@
+package cache_memory_simulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fully-associative cache whose cost per access does not depend on its size.
+ * <p>
+ * A {@link SetAssociativeCache} with a single set has to scan every line on each access. Here a
+ * {@link TagIndex} maps tags straight to lines, and LRU/FIFO order is kept in an intrusive doubly
+ * linked list (head = next victim), so hits, misses and evictions are all O(1).
+ * The usage timestamps are still kept, as in {@link SetAssociativeCache}: they are the state that
+ * gets checkpointed, and the list and index are rebuilt from them on restore.
+ */
+public class FullyAssociativeCache extends AbstractCache {
+    private ReplacementPolicy replacementPolicy;
+
+    private final TagIndex index;
+    private final long[] usageTimestamps;
+    private long operationCounter = 0;
+    private final int[] prev;
+    private final int[] next;
+    private int head = NONE; // least recently used / first inserted
+    private int tail = NONE; // most recently used / last inserted
+    private int filled = 0;  // lines are filled in order until the cache is full
+
+    public FullyAssociativeCache(int size, int blockSize, Memory memory, ReplacementPolicy replacementPolicy, WritePolicy writePolicy) {
+        this(size, blockSize, memory, replacementPolicy, writePolicy, AllocationPolicy.WRITE_ALLOCATE, 0, blockSize);
+    }
+
+    public FullyAssociativeCache(int size, int blockSize, Memory memory, ReplacementPolicy replacementPolicy,
+                                 WritePolicy writePolicy, AllocationPolicy allocationPolicy, int writeCombiningEntries, int sectorSize) {
+        super(new CacheGeometry(size, blockSize, size, sectorSize), memory, writePolicy, allocationPolicy, writeCombiningEntries);
+        this.replacementPolicy = replacementPolicy;
+
+        this.index = new TagIndex(size);
+        this.usageTimestamps = new long[size];
+        this.prev = new int[size];
+        this.next = new int[size];
+    }
+
+    @Override
+    protected int findLine(long blockNumber) {
+        return index.get(blockNumber);
+    }
+
+    // With no sets there are no conflict misses: a re-fetch means the cache was too small
+    @Override
+    protected String replacementMissType() {
+        return "Capacity";
+    }
+
+    @Override
+    protected void onEvict(int lineIndex, long blockNumber) {
+        index.remove(blockNumber);
+        unlink(lineIndex);
+    }
+
+    @Override
+    protected void onFill(int lineIndex, long blockNumber) {
+        // In a fully-associative cache the tag is the whole block number
+        index.put(blockNumber, lineIndex);
+        usageTimestamps[lineIndex] = ++operationCounter;
+        append(lineIndex);
+    }
+
+    @Override
+    protected long blockNumberOf(int lineIndex) {
+        return lines[lineIndex].getTag();
+    }
+
+    @Override
+    protected int findVictimIndex(long blockNumber) {
+        if (filled < lines.length)
+            return filled++;
+        if (replacementPolicy == ReplacementPolicy.RANDOM)
+            return nextRandom(lines.length);
+        // LRU and FIFO both evict the head; they differ only in whether a hit moves the line
+        return head;
+    }
+
+    // Hit bookkeeping: LRU moves the line to the most recently used end, FIFO leaves it in place
+    @Override
+    protected void onHit(int lineIndex) {
+        if (replacementPolicy != ReplacementPolicy.LRU)
+            return;
+        usageTimestamps[lineIndex] = ++operationCounter;
+        if (lineIndex != tail) {
+            unlink(lineIndex);
+            append(lineIndex);
+        }
+    }
+
+    private void append(int lineIndex) {
+        prev[lineIndex] = tail;
+        next[lineIndex] = NONE;
+        if (tail != NONE) next[tail] = lineIndex;
+        else head = lineIndex;
+        tail = lineIndex;
+    }
+
+    private void unlink(int lineIndex) {
+        int p = prev[lineIndex], n = next[lineIndex];
+        if (p != NONE) next[p] = n;
+        else head = n;
+        if (n != NONE) prev[n] = p;
+        else tail = p;
+    }
+
+    // Rebuilds the tag index and the recency list from the lines and their timestamps
+    private void rebuildIndex() {
+        index.clear();
+        head = tail = NONE;
+        filled = 0;
+        Integer[] order = new Integer[lines.length];
+        int valid = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isValid()) {
+                order[valid++] = i;
+                index.put(lines[i].getTag(), i);
+            }
+        }
+        Arrays.sort(order, 0, valid, (a, b) -> Long.compare(usageTimestamps[a], usageTimestamps[b]));
+        for (int i = 0; i < valid; i++)
+            append(order[i]);
+        // Lines only become invalid all together, so the valid ones are always a prefix
+        filled = valid;
+    }
+
+    @Override
+    public String getLastAccessDetails() {
+        return String.format("[Block: %d | Line: %d | Tag: %d]", lastBlockNumber, lastLineIndex, lastBlockNumber);
+    }
+
+    public ReplacementPolicy getReplacementPolicy() {
+        return replacementPolicy;
+    }
+
+    @Override
+    protected long replacementStamp(int lineIndex) {
+        return usageTimestamps[lineIndex];
+    }
+
+    @Override
+    protected void setReplacementStamp(int lineIndex, long stamp) {
+        usageTimestamps[lineIndex] = stamp;
+    }
+
+    @Override
+    protected long replacementClock() {
+        return operationCounter;
+    }
+
+    @Override
+    protected void setReplacementClock(long clock) {
+        operationCounter = clock;
+    }
+
+    @Override
+    protected void replacementStateRestored() {
+        rebuildIndex();
+    }
+
+    @Override
+    protected void saveReplacementState(DataOutputStream out) throws IOException {
+        for (long timestamp : usageTimestamps)
+            Checkpoint.writeVarLong(out, timestamp);
+        Checkpoint.writeVarLong(out, operationCounter);
+    }
+
+    @Override
+    protected void restoreReplacementState(DataInputStream in) throws IOException {
+        for (int i = 0; i < usageTimestamps.length; i++)
+            usageTimestamps[i] = Checkpoint.readVarLong(in);
+        operationCounter = Checkpoint.readVarLong(in);
+        rebuildIndex();
+    }
+}
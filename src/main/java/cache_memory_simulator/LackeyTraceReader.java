@@ -0,0 +1,66 @@
+package cache_memory_simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the output of {@code valgrind --tool=lackey --trace-mem=yes}:
+ * <pre>
+ * I  0023C790,2
+ *  S BE80199C,4
+ *  L BE801950,4
+ *  M 0025747C,1
+ * </pre>
+ * Loads become reads, stores become writes and modifies become a read followed by a write.
+ * Instruction fetches are skipped unless requested, and any other line (such as valgrind's
+ * {@code ==pid==} banner) is ignored. The access size after the comma is in bytes.
+ */
+public class LackeyTraceReader extends TraceReader {
+    private final boolean includeInstructions;
+
+    public LackeyTraceReader(InputStream in, boolean includeInstructions) {
+        this(in, includeInstructions, Memory.WORD_BYTES);
+    }
+
+    public LackeyTraceReader(InputStream in, boolean includeInstructions, int wordBytes) {
+        super(in, wordBytes);
+        this.includeInstructions = includeInstructions;
+    }
+
+    @Override
+    protected boolean parseRecord() throws IOException {
+        skipBlanks();
+        int kind = peek();
+        if (kind < 0)
+            return false;
+        if (kind != 'I' && kind != 'L' && kind != 'S' && kind != 'M') {
+            skipLine();
+            return true;
+        }
+
+        read();
+        int separator = peek();
+        if (separator != ' ' && separator != '\t') {
+            skipLine();
+            return true;
+        }
+        skipBlanks();
+        long address = readHex();
+        long size = 1;
+        if (peek() == ',') {
+            read();
+            size = readDecimal();
+        }
+        skipLine();
+
+        switch (kind) {
+            case 'L' -> emit(address, size, false);
+            case 'S' -> emit(address, size, true);
+            case 'M' -> emitModify(address, size);
+            default -> {
+                if (includeInstructions) emit(address, size, false);
+            }
+        }
+        return true;
+    }
+}
@@ -3,12 +3,29 @@ package cache_memory_simulator;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Memory {
+    // Size of one simulated word, used when traffic is reported in bytes
+    public static final int WORD_BYTES = 8;
+
     private String[] memory;
     private ObservableList<MemoryCell> memoryCells;
 
+    // Traffic seen by memory: words moved, and transactions (a block fill or writeback is one burst).
+    // Adders, because a concurrent cache moves blocks from several threads at once.
+    private final LongAdder wordsRead = new LongAdder();
+    private final LongAdder wordsWritten = new LongAdder();
+    private final LongAdder readBursts = new LongAdder();
+    private final LongAdder writeBursts = new LongAdder();
+
+    // Records overwritten words while an AccessHistory is recording; null otherwise
+    private UndoLog journal;
+
     public Memory(int size) {
         memory = new String[size];
         memoryCells = FXCollections.observableArrayList();
@@ -20,12 +37,75 @@ public class Memory {
         }
     }
 
-    public String read(int address){
-        return memory[address];
+    // Addresses past the end of the simulated memory read as empty and writes to them are dropped,
+    // so caches can be driven with full 64-bit traces against a small memory
+    public void write(long address, String data){
+        wordsWritten.increment();
+        writeBursts.increment();
+        store(address, data);
+    }
+
+    // Reads the words of a block selected by mask (bit i = word i) in one burst
+    public void readBlock(long baseAddress, String[] into, long mask) {
+        int words = 0;
+        for (int i = 0; i < into.length; i++) {
+            if (((mask >>> i) & 1) != 0) {
+                into[i] = load(baseAddress + i);
+                words++;
+            }
+        }
+        if (words > 0) {
+            wordsRead.add(words);
+            readBursts.increment();
+        }
+    }
+
+    // Writes the words of a block selected by mask (bit i = word i) in one burst
+    public void writeBlock(long baseAddress, String[] from, long mask) {
+        int words = 0;
+        for (int i = 0; i < from.length; i++) {
+            if (((mask >>> i) & 1) != 0) {
+                store(baseAddress + i, from[i]);
+                words++;
+            }
+        }
+        if (words > 0) {
+            wordsWritten.add(words);
+            writeBursts.increment();
+        }
+    }
+
+    private String load(long address) {
+        if (!contains(address)) return "";
+        return memory[(int) address];
+    }
+
+    private void store(long address, String data) {
+        if (!contains(address)) return;
+        if (journal != null) journal.memoryWord(address, memory[(int) address]);
+        memory[(int) address] = data;
+        memoryCells.get((int) address).setData(data); // update table view
     }
-    public void write(int address, String data){
-        memory[address] = data;
-        memoryCells.get(address).setData(data); // update table view
+
+    void setJournal(UndoLog journal) {
+        this.journal = journal;
+    }
+
+    // Puts back a word without counting traffic, for the undo log
+    void restoreWord(long address, String data) {
+        memory[(int) address] = data;
+        memoryCells.get((int) address).setData(data);
+    }
+
+    void restoreTraffic(long wordsRead, long wordsWritten, long readBursts, long writeBursts) {
+        restore(this.wordsRead, wordsRead);
+        restore(this.wordsWritten, wordsWritten);
+        restore(this.readBursts, readBursts);
+        restore(this.writeBursts, writeBursts);
+    }
+
+    public boolean contains(long address) {
+        return address >= 0 && address < memory.length;
     }
 
     public ObservableList<MemoryCell> getMemoryCells() {
@@ -35,4 +115,52 @@ public class Memory {
     public int getSize() {
         return memory.length;
     }
+
+    public long getWordsRead() {
+        return wordsRead.sum();
+    }
+
+    public long getWordsWritten() {
+        return wordsWritten.sum();
+    }
+
+    public long getReadBursts() {
+        return readBursts.sum();
+    }
+
+    public long getWriteBursts() {
+        return writeBursts.sum();
+    }
+
+    public String getTrafficSummary() {
+        return String.format("reads: %d words in %d bursts, writes: %d words in %d bursts",
+                getWordsRead(), getReadBursts(), getWordsWritten(), getWriteBursts());
+    }
+
+    public void saveState(DataOutputStream out) throws IOException {
+        Checkpoint.writeVarLong(out, memory.length);
+        for (String word : memory)
+            out.writeUTF(word);
+        Checkpoint.writeVarLong(out, wordsRead.sum());
+        Checkpoint.writeVarLong(out, wordsWritten.sum());
+        Checkpoint.writeVarLong(out, readBursts.sum());
+        Checkpoint.writeVarLong(out, writeBursts.sum());
+    }
+
+    public void restoreState(DataInputStream in) throws IOException {
+        Checkpoint.expect(in, memory.length, "memory size");
+        for (int i = 0; i < memory.length; i++) {
+            memory[i] = in.readUTF();
+            memoryCells.get(i).setData(memory[i]); // keep the table view in sync
+        }
+        restore(wordsRead, Checkpoint.readVarLong(in));
+        restore(wordsWritten, Checkpoint.readVarLong(in));
+        restore(readBursts, Checkpoint.readVarLong(in));
+        restore(writeBursts, Checkpoint.readVarLong(in));
+    }
+
+    private static void restore(LongAdder counter, long value) {
+        counter.reset();
+        counter.add(value);
+    }
 }
@@ -0,0 +1,319 @@
+package cache_memory_simulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A set-associative cache shared by several tenants (or cores), with way partitioning.
+ * <p>
+ * Every access is issued on behalf of the tenant set by {@link #setTenant(int)}. A tenant may hit
+ * in any way, but on a miss it may only allocate into the ways of its mask, like Intel CAT.
+ * The masks are either fixed (static partitioning) or recomputed every {@code epoch} accesses
+ * by utility-based partitioning (UCP, Qureshi and Patt 2006).
+ * <p>
+ * For UCP, each tenant has shadow tags: an LRU stack per set that shows what the tenant would
+ * hold if it had the whole cache to itself. Hits are counted by stack position, which gives the
+ * hits the tenant would get with 1, 2, ... ways. The same shadow tags measure interference: a
+ * miss in the shared cache that hits in the tenant's shadow tags is a miss caused by sharing.
+ */
+public class PartitionedCache extends SetAssociativeCache {
+    private final int tenants;
+    private final int ways;
+    private final long[] wayMasks;
+    private final long epoch; // accesses between repartitions; 0 keeps the masks fixed
+    private final int[] owners; // tenant that filled each line, or -1
+
+    private int tenant = 0;
+
+    // Shadow tags: one MRU-first stack of block numbers per (tenant, set)
+    private final long[] shadowBlocks;
+    private final int[] shadowSize;
+    // Shadow hits per (tenant, stack position) in the current epoch
+    private final long[] stackHits;
+
+    private final long[] accesses;
+    private final long[] tenantHits;
+    private final long[] interferenceMisses;
+    private final long[] evictionsCaused;
+    private final long[] evictionsSuffered;
+    private long epochAccesses = 0;
+    private long repartitions = 0;
+
+    public PartitionedCache(int size, int blockSize, int associativity, Memory memory, ReplacementPolicy replacementPolicy,
+                            WritePolicy writePolicy, long[] wayMasks, long epoch) {
+        this(size, blockSize, associativity, memory, replacementPolicy, writePolicy, AllocationPolicy.WRITE_ALLOCATE, 0,
+                blockSize, wayMasks, epoch);
+    }
+
+    public PartitionedCache(int size, int blockSize, int associativity, Memory memory, ReplacementPolicy replacementPolicy,
+                            WritePolicy writePolicy, AllocationPolicy allocationPolicy, int writeCombiningEntries,
+                            int sectorSize, long[] wayMasks, long epoch) {
+        super(size, blockSize, associativity, memory, replacementPolicy, writePolicy, allocationPolicy, writeCombiningEntries, sectorSize);
+        this.tenants = wayMasks.length;
+        this.ways = associativity;
+        if (tenants == 0)
+            throw new IllegalArgumentException("At least one tenant is required");
+        if (associativity > 64)
+            throw new IllegalArgumentException("Way masks support up to 64 ways, got " + associativity);
+        if (epoch < 0)
+            throw new IllegalArgumentException("Epoch must not be negative, got " + epoch);
+        if (epoch > 0 && tenants > associativity)
+            throw new IllegalArgumentException("Dynamic partitioning needs at least one way per tenant: "
+                    + tenants + " tenants, " + associativity + " ways");
+        long allWays = allWays(associativity);
+        for (int t = 0; t < tenants; t++)
+            if ((wayMasks[t] & allWays) == 0)
+                throw new IllegalArgumentException("Way mask of tenant " + t + " selects none of the " + associativity + " ways");
+
+        this.wayMasks = new long[tenants];
+        for (int t = 0; t < tenants; t++)
+            this.wayMasks[t] = wayMasks[t] & allWays;
+        this.epoch = epoch;
+        this.owners = new int[size];
+        Arrays.fill(owners, -1);
+
+        int numSets = geometry.getNumSets();
+        this.shadowBlocks = new long[tenants * numSets * associativity];
+        this.shadowSize = new int[tenants * numSets];
+        this.stackHits = new long[tenants * associativity];
+
+        this.accesses = new long[tenants];
+        this.tenantHits = new long[tenants];
+        this.interferenceMisses = new long[tenants];
+        this.evictionsCaused = new long[tenants];
+        this.evictionsSuffered = new long[tenants];
+    }
+
+    // Masks that give every tenant all ways, i.e. an unpartitioned shared cache
+    public static long[] sharedMasks(int tenants, int associativity) {
+        long[] masks = new long[tenants];
+        Arrays.fill(masks, allWays(associativity));
+        return masks;
+    }
+
+    // Contiguous, as equal as possible, way ranges: the starting point for UCP
+    public static long[] equalMasks(int tenants, int associativity) {
+        int[] allocation = new int[tenants];
+        for (int t = 0; t < tenants; t++)
+            allocation[t] = associativity / tenants + (t < associativity % tenants ? 1 : 0);
+        return contiguousMasks(allocation);
+    }
+
+    public void setTenant(int tenant) {
+        if (tenant < 0 || tenant >= tenants)
+            throw new IllegalArgumentException("Tenant must be between 0 and " + (tenants - 1) + ", got " + tenant);
+        this.tenant = tenant;
+    }
+
+    public boolean read(int tenant, long address) {
+        setTenant(tenant);
+        return read(address);
+    }
+
+    public boolean write(int tenant, long address, String data) {
+        setTenant(tenant);
+        return write(address, data);
+    }
+
+    @Override
+    public boolean read(long address) {
+        boolean aloneHit = shadowAccess(address);
+        boolean hit = super.read(address);
+        record(hit, aloneHit);
+        return hit;
+    }
+
+    @Override
+    public boolean write(long address, String data) {
+        boolean aloneHit = shadowAccess(address);
+        boolean hit = super.write(address, data);
+        record(hit, aloneHit);
+        return hit;
+    }
+
+    private void record(boolean hit, boolean aloneHit) {
+        accesses[tenant]++;
+        if (hit)
+            tenantHits[tenant]++;
+        else if (aloneHit)
+            interferenceMisses[tenant]++;
+        if (epoch > 0 && ++epochAccesses == epoch)
+            repartition();
+    }
+
+    @Override
+    protected long allowedWays() {
+        return wayMasks[tenant];
+    }
+
+    @Override
+    protected void onEvict(int lineIndex, long blockNumber) {
+        int owner = owners[lineIndex];
+        if (owner >= 0 && owner != tenant) {
+            evictionsCaused[tenant]++;
+            evictionsSuffered[owner]++;
+        }
+    }
+
+    @Override
+    protected void onFill(int lineIndex, long blockNumber) {
+        super.onFill(lineIndex, blockNumber);
+        owners[lineIndex] = tenant;
+    }
+
+    // Looks the block up in the tenant's shadow tags and makes it most recently used there
+    private boolean shadowAccess(long address) {
+        long block = geometry.blockNumber(address);
+        int stack = tenant * geometry.getNumSets() + geometry.setIndex(block);
+        int base = stack * ways;
+        int size = shadowSize[stack];
+
+        int position = size;
+        for (int i = 0; i < size; i++) {
+            if (shadowBlocks[base + i] == block) {
+                position = i;
+                break;
+            }
+        }
+        boolean hit = position < size;
+        if (hit)
+            stackHits[tenant * ways + position]++;
+        else if (size < ways)
+            shadowSize[stack] = size + 1;
+        else
+            position = ways - 1; // the LRU entry drops off
+
+        System.arraycopy(shadowBlocks, base, shadowBlocks, base + 1, position);
+        shadowBlocks[base] = block;
+        return hit;
+    }
+
+    // UCP lookahead: repeatedly give ways to the tenant with the most extra hits per extra way
+    private void repartition() {
+        long[][] hitsWith = new long[tenants][ways + 1]; // hitsWith[t][n] = shadow hits with n ways
+        for (int t = 0; t < tenants; t++)
+            for (int n = 1; n <= ways; n++)
+                hitsWith[t][n] = hitsWith[t][n - 1] + stackHits[t * ways + n - 1];
+
+        int[] allocation = new int[tenants];
+        Arrays.fill(allocation, 1);
+        int balance = ways - tenants;
+        while (balance > 0) {
+            int bestTenant = 0, bestWays = 1;
+            double bestUtility = -1;
+            for (int t = 0; t < tenants; t++) {
+                for (int extra = 1; extra <= balance; extra++) {
+                    double utility = (double) (hitsWith[t][allocation[t] + extra] - hitsWith[t][allocation[t]]) / extra;
+                    if (utility > bestUtility) {
+                        bestUtility = utility;
+                        bestTenant = t;
+                        bestWays = extra;
+                    }
+                }
+            }
+            allocation[bestTenant] += bestWays;
+            balance -= bestWays;
+        }
+        System.arraycopy(contiguousMasks(allocation), 0, wayMasks, 0, tenants);
+
+        // Halve the counters so older epochs still count, but less
+        for (int i = 0; i < stackHits.length; i++)
+            stackHits[i] >>= 1;
+        epochAccesses = 0;
+        repartitions++;
+    }
+
+    private static long[] contiguousMasks(int[] allocation) {
+        long[] masks = new long[allocation.length];
+        int first = 0;
+        for (int t = 0; t < allocation.length; t++) {
+            masks[t] = allWays(allocation[t]) << first;
+            first += allocation[t];
+        }
+        return masks;
+    }
+
+    private static long allWays(int ways) {
+        return ways >= 64 ? -1L : (1L << ways) - 1;
+    }
+
+    public int getTenants() {
+        return tenants;
+    }
+
+    public long getWayMask(int tenant) {
+        return wayMasks[tenant];
+    }
+
+    public long getAccesses(int tenant) {
+        return accesses[tenant];
+    }
+
+    public long getHits(int tenant) {
+        return tenantHits[tenant];
+    }
+
+    public long getInterferenceMisses(int tenant) {
+        return interferenceMisses[tenant];
+    }
+
+    public long getRepartitions() {
+        return repartitions;
+    }
+
+    public String getTenantSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(epoch > 0
+                ? String.format("UCP partitioning: %d repartitions every %d accesses%n", repartitions, epoch)
+                : String.format("fixed way masks%n"));
+        for (int t = 0; t < tenants; t++) {
+            long misses = accesses[t] - tenantHits[t];
+            summary.append(String.format("tenant %d: accesses=%d hitRatio=%.4f misses=%d interferenceMisses=%d (%.1f%% of misses)"
+                            + " evictedOthers=%d evictedByOthers=%d ways=0x%s%n",
+                    t, accesses[t], accesses[t] == 0 ? 0 : (double) tenantHits[t] / accesses[t], misses,
+                    interferenceMisses[t], misses == 0 ? 0 : 100.0 * interferenceMisses[t] / misses,
+                    evictionsCaused[t], evictionsSuffered[t], Long.toHexString(wayMasks[t])));
+        }
+        return summary.toString().stripTrailing();
+    }
+
+    @Override
+    protected void saveReplacementState(DataOutputStream out) throws IOException {
+        super.saveReplacementState(out);
+        Checkpoint.writeVarLong(out, tenants);
+        for (long mask : wayMasks)
+            Checkpoint.writeVarLong(out, mask);
+        for (int owner : owners)
+            Checkpoint.writeVarLong(out, owner);
+        for (int size : shadowSize)
+            Checkpoint.writeVarLong(out, size);
+        for (long block : shadowBlocks)
+            Checkpoint.writeVarLong(out, block);
+        for (long[] counters : new long[][]{stackHits, accesses, tenantHits, interferenceMisses, evictionsCaused, evictionsSuffered})
+            for (long counter : counters)
+                Checkpoint.writeVarLong(out, counter);
+        Checkpoint.writeVarLong(out, epochAccesses);
+        Checkpoint.writeVarLong(out, repartitions);
+    }
+
+    @Override
+    protected void restoreReplacementState(DataInputStream in) throws IOException {
+        super.restoreReplacementState(in);
+        Checkpoint.expect(in, tenants, "tenant count");
+        for (int t = 0; t < tenants; t++)
+            wayMasks[t] = Checkpoint.readVarLong(in);
+        for (int i = 0; i < owners.length; i++)
+            owners[i] = (int) Checkpoint.readVarLong(in);
+        for (int i = 0; i < shadowSize.length; i++)
+            shadowSize[i] = (int) Checkpoint.readVarLong(in);
+        for (int i = 0; i < shadowBlocks.length; i++)
+            shadowBlocks[i] = Checkpoint.readVarLong(in);
+        for (long[] counters : new long[][]{stackHits, accesses, tenantHits, interferenceMisses, evictionsCaused, evictionsSuffered})
+            for (int i = 0; i < counters.length; i++)
+                counters[i] = Checkpoint.readVarLong(in);
+        epochAccesses = Checkpoint.readVarLong(in);
+        repartitions = Checkpoint.readVarLong(in);
+    }
+}
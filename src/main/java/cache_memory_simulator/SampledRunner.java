@@ -0,0 +1,187 @@
+package cache_memory_simulator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Approximate replay for quick what-if questions.
+ * <ul>
+ *     <li><b>Set sampling</b> simulates only a random subset of the cache sets. Sets never interact,
+ *     so accesses to the other sets can be dropped without touching the cache at all, which is
+ *     where the speed-up comes from.</li>
+ *     <li><b>Interval sampling</b> measures only periodic windows of {@code window} accesses out of
+ *     every {@code period}. Accesses between windows only warm the cache ({@link CacheMemory#warm}):
+ *     tags, dirty bits and replacement state are kept up to date so each window starts from a warm
+ *     state, but no data moves and nothing is counted. Every access is still looked up, so this
+ *     saves around a third of the time rather than scaling with the sampled fraction.</li>
+ * </ul>
+ * The hit ratio is reported with a 95% confidence interval from a ratio estimator over the
+ * sample units: the sampled sets, or the windows when interval sampling runs over all sets. The
+ * interval uses Student's t with units - 1 degrees of freedom, so it stays honest with few units,
+ * though below {@link #MIN_UNITS} units it should be taken as rough.
+ */
+public final class SampledRunner {
+    // Fewer sample units than this make the variance estimate itself unreliable
+    public static final int MIN_UNITS = 30;
+
+    // Two-sided 95% Student-t quantiles for 1 to 30 degrees of freedom
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+    private static final double Z_95 = 1.959964;
+
+    private SampledRunner() {
+    }
+
+    /**
+     * @param geometry    geometry of the simulated cache, used to map addresses to sets
+     * @param setFraction fraction of sets to simulate, in (0, 1]
+     * @param period      length of an interval sampling period; 0 disables interval sampling
+     * @param window      number of measured accesses at the start of each period
+     */
+    public record Plan(CacheGeometry geometry, double setFraction, long period, long window, long seed) {
+        public Plan {
+            if (setFraction <= 0 || setFraction > 1)
+                throw new IllegalArgumentException("Set fraction must be in (0, 1], got " + setFraction);
+            if (period < 0 || window < 0 || (period > 0 && (window == 0 || window > period)))
+                throw new IllegalArgumentException("Sampling window must be in [1, period], got window=" + window + " period=" + period);
+        }
+    }
+
+    public record Estimate(double hitRatio, double halfWidth, long units, long measuredAccesses,
+                           long simulatedAccesses, long warmedAccesses, long totalAccesses, long nanos) {
+        @Override
+        public String toString() {
+            return String.format("hitRatio~%.4f +/- %.4f (95%% CI over %d units%s) measured=%d simulated=%d warmed=%d of %d accesses time=%.3fs",
+                    hitRatio, halfWidth, units, units < MIN_UNITS ? ", too few for a reliable interval" : "",
+                    measuredAccesses, simulatedAccesses, warmedAccesses, totalAccesses, nanos / 1e9);
+        }
+    }
+
+    // Two-sided 95% quantile of Student's t; a Cornish-Fisher expansion around the normal beyond the table
+    static double t95(long degreesOfFreedom) {
+        if (degreesOfFreedom <= T_95.length)
+            return T_95[(int) degreesOfFreedom - 1];
+        double z = Z_95, z3 = z * z * z, z5 = z3 * z * z, n = degreesOfFreedom;
+        return z + (z3 + z) / (4 * n) + (5 * z5 + 16 * z3 + 3 * z) / (96 * n * n);
+    }
+
+    public static Estimate run(CacheMemory cache, AddressStream stream, Plan plan, long limit) {
+        CacheGeometry geometry = plan.geometry();
+        int numSets = geometry.getNumSets();
+        boolean[] sampledSets = chooseSets(numSets, plan);
+        int sampledCount = 0;
+        for (boolean sampled : sampledSets)
+            if (sampled) sampledCount++;
+
+        boolean intervals = plan.period() > 0;
+        long[] setHits = new long[numSets];
+        long[] setAccesses = new long[numSets];
+        RatioAccumulator windows = new RatioAccumulator();
+        long windowHits = 0, windowAccesses = 0;
+        long currentPeriod = -1;
+
+        PartitionedCache shared = cache instanceof PartitionedCache partitioned ? partitioned : null;
+        long total = 0, simulated = 0, warmed = 0, measured = 0;
+        long start = System.nanoTime();
+        while (total < limit && stream.hasNext()) {
+            long address = stream.nextLong();
+            boolean write = stream.isWrite();
+            long position = total++;
+
+            int set = geometry.setIndex(geometry.blockNumber(address));
+            if (!sampledSets[set])
+                continue;
+
+            if (shared != null)
+                shared.setTenant(stream.tenant());
+            if (intervals && position % plan.period() >= plan.window()) {
+                cache.warm(address, write);
+                warmed++;
+                continue;
+            }
+            boolean hit = write ? cache.write(address, TraceRunner.STORE_DATA) : cache.read(address);
+            simulated++;
+
+            if (intervals) {
+                // Close the previous window once an access from a later period is measured
+                long periodIndex = position / plan.period();
+                if (periodIndex != currentPeriod && windowAccesses > 0) {
+                    windows.add(windowHits, windowAccesses);
+                    windowHits = 0;
+                    windowAccesses = 0;
+                }
+                currentPeriod = periodIndex;
+                windowAccesses++;
+                if (hit) windowHits++;
+            }
+            setAccesses[set]++;
+            if (hit) setHits[set]++;
+            measured++;
+        }
+        if (windowAccesses > 0)
+            windows.add(windowHits, windowAccesses);
+        long nanos = System.nanoTime() - start;
+
+        // With set sampling the choice of sets dominates the error, so sets stay the sample units
+        // even when intervals are measured too; windows are the units only when every set is simulated
+        if (intervals && sampledCount == numSets)
+            return windows.estimate(1.0, measured, simulated, warmed, total, nanos);
+
+        RatioAccumulator sets = new RatioAccumulator();
+        for (int s = 0; s < numSets; s++)
+            if (sampledSets[s] && setAccesses[s] > 0)
+                sets.add(setHits[s], setAccesses[s]);
+        // Finite population correction: sampling all sets leaves no sampling error
+        double fpc = 1.0 - (double) sampledCount / numSets;
+        return sets.estimate(fpc, measured, simulated, warmed, total, nanos);
+    }
+
+    // Picks round(fraction * numSets) sets uniformly at random, at least one
+    private static boolean[] chooseSets(int numSets, Plan plan) {
+        int wanted = Math.max(1, (int) Math.round(plan.setFraction() * numSets));
+        int[] order = new int[numSets];
+        for (int i = 0; i < numSets; i++)
+            order[i] = i;
+        SplittableRandom random = new SplittableRandom(plan.seed());
+        for (int i = 0; i < wanted; i++) {
+            int j = i + random.nextInt(numSets - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        boolean[] sampled = new boolean[numSets];
+        for (int i = 0; i < wanted; i++)
+            sampled[order[i]] = true;
+        return sampled;
+    }
+
+    // Running sums for the ratio estimator p = sum(h) / sum(a) over sample units
+    private static final class RatioAccumulator {
+        private long units;
+        private double sumH, sumA, sumHH, sumAA, sumHA;
+
+        void add(long hits, long accesses) {
+            units++;
+            sumH += hits;
+            sumA += accesses;
+            sumHH += (double) hits * hits;
+            sumAA += (double) accesses * accesses;
+            sumHA += (double) hits * accesses;
+        }
+
+        Estimate estimate(double fpc, long measured, long simulated, long warmed, long total, long nanos) {
+            if (units == 0 || sumA == 0)
+                return new Estimate(0, 0, 0, measured, simulated, warmed, total, nanos);
+            double p = sumH / sumA;
+            double halfWidth = 0;
+            if (units > 1) {
+                double meanA = sumA / units;
+                double residuals = sumHH - 2 * p * sumHA + p * p * sumAA;
+                double variance = fpc * Math.max(0, residuals) / (units - 1) / (units * meanA * meanA);
+                halfWidth = t95(units - 1) * Math.sqrt(variance);
+            }
+            return new Estimate(p, halfWidth, units, measured, simulated, warmed, total, nanos);
+        }
+    }
+}
@@ -1,173 +1,91 @@
 package cache_memory_simulator;
 
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
-
-public class SetAssociativeCache implements CacheMemory {
-    private CacheLine[] lines;
-    private Memory memory;
-    private int blockSize;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class SetAssociativeCache extends AbstractCache {
     private int associativity; // K
     private int numSets;
     private ReplacementPolicy replacementPolicy;
-    private WritePolicy writePolicy;
-    private String lastEvictionMessage = "";
-
-    private int hits = 0;
-    private int misses = 0;
-    private String lastMissType;
-
-    private Set<Integer> seenBlocks = new HashSet<>();
 
     // To implement LRU and FIFO, we need to track usage/insertion
     private long[] usageTimestamps;
     private long operationCounter = 0;
 
-    private int lastBlockNumber;
-    private int lastSetIndex;
-    private int lastTag;
-
     public SetAssociativeCache(int size, int blockSize, int associativity, Memory memory, ReplacementPolicy replacementPolicy, WritePolicy writePolicy) {
-        this.blockSize = blockSize;
-        this.memory = memory;
+        this(size, blockSize, associativity, memory, replacementPolicy, writePolicy, AllocationPolicy.WRITE_ALLOCATE, 0, blockSize);
+    }
+
+    public SetAssociativeCache(int size, int blockSize, int associativity, Memory memory, ReplacementPolicy replacementPolicy,
+                               WritePolicy writePolicy, AllocationPolicy allocationPolicy, int writeCombiningEntries, int sectorSize) {
+        super(new CacheGeometry(size, blockSize, associativity, sectorSize), memory, writePolicy, allocationPolicy, writeCombiningEntries);
         this.associativity = associativity;
         this.replacementPolicy = replacementPolicy;
-        this.writePolicy = writePolicy;
-
-        // Calculate number of sets
-        this.lines = new CacheLine[size];
         this.usageTimestamps = new long[size];
 
         // Example: 8 lines, 2-way => 4 sets.
-        this.numSets = size / associativity;
-
-        for (int i = 0; i < size; i++) {
-            lines[i] = new CacheLine(i, blockSize);
-            usageTimestamps[i] = 0;
-        }
+        this.numSets = geometry.getNumSets();
     }
 
     @Override
-    public boolean read(int address) {
-        this.lastBlockNumber = address / blockSize;
-        this.lastSetIndex = lastBlockNumber % numSets;
-        this.lastTag = lastBlockNumber / numSets;
-
+    protected int findLine(long blockNumber) {
+        long tag = geometry.tag(blockNumber);
         // The lines for a set range from [setIndex * K] to [setIndex * K + K - 1]
-        int startIndex = lastSetIndex * associativity;
+        int startIndex = geometry.setIndex(blockNumber) * associativity;
         int endIndex = startIndex + associativity;
         for (int i = startIndex; i < endIndex; i++) {
             CacheLine line = lines[i];
-            if (line.isValid() && line.getTag() == lastTag) {
-                hits++;
-                // Update usage for LRU (Touched now)
-                if (replacementPolicy == ReplacementPolicy.LRU)
-                    usageTimestamps[i] = ++operationCounter;
-                return true;
-            }
+            if (line.isValid() && line.getTag() == tag)
+                return i;
         }
-        misses++;
-        handleMiss(address, lastBlockNumber, lastTag, startIndex, endIndex);
-        return false;
+        return NONE;
     }
 
     @Override
-    public boolean write(int address, String data) {
-        this.lastEvictionMessage = "";
-        this.lastBlockNumber = address / blockSize;
-        this.lastSetIndex = lastBlockNumber % numSets;
-        this.lastTag = lastBlockNumber / numSets;
-        int offset = address % blockSize;
-
-        int startIndex = lastSetIndex * associativity;
-        int endIndex = startIndex + associativity;
-
-        for (int i = startIndex; i < endIndex; i++) {
-            CacheLine line = lines[i];
-            if (line.isValid() && line.getTag() == lastTag) {
-                hits++;
-                // Write Through policy (update cache and memory)
-                line.getData()[offset] = data;
-                if (writePolicy == WritePolicy.WRITE_THROUGH)
-                    memory.write(address, data);
-                else
-                    line.setDirty(true);
-
-                lastMissType = "Hit";
-                if (replacementPolicy == ReplacementPolicy.LRU)
-                    usageTimestamps[i] = ++operationCounter;
-                return true;
-
-            }
-        }
-
-        misses++;
-        // Fetch block first
-        int lineIndex = handleMiss(address, lastBlockNumber, lastTag, startIndex, endIndex);
-
-        // Perform the write on the newly loaded line
-        lines[lineIndex].getData()[offset] = data;
-        return false;
+    protected void onHit(int lineIndex) {
+        // Update usage for LRU (Touched now)
+        if (replacementPolicy == ReplacementPolicy.LRU)
+            usageTimestamps[lineIndex] = ++operationCounter;
     }
 
-    // Helper function to handle fetching from memory and eviction logic
-    private int handleMiss(int address, int blockNumber, int tag, int startIndex, int endIndex) {
-        boolean isCompulsory = !seenBlocks.contains(blockNumber);
-        seenBlocks.add(blockNumber);
-
-        if (isCompulsory)
-            lastMissType = "Compulsory";
-        else
-            lastMissType = "Conflict";
-
-        int victimIndex = findVictimIndex(startIndex, endIndex);
-        CacheLine line = lines[victimIndex];
-
-        if (line.isValid() && line.isDirty())
-            flushDirtyLineToMemory(line, victimIndex);
-
-
-        String[] blockData = new String[blockSize];
-        for (int i = 0; i < blockSize; i++) {
-            int memAddress = blockNumber * blockSize + i;
-            if (memAddress < memory.getSize())
-                blockData[i] = memory.read(memAddress);
-            else
-                blockData[i] = "";
-        }
-
-        line.setTag(tag);
-        line.setValid(true);
-        line.setDirty(false);
-        line.setData(blockData);
-
+    @Override
+    protected void onFill(int lineIndex, long blockNumber) {
         // Update timestamps for LRU or FIFO
         // For LRU: Used now. For FIFO: Inserted now.
-        usageTimestamps[victimIndex] = ++operationCounter;
-        return victimIndex;
+        usageTimestamps[lineIndex] = ++operationCounter;
     }
 
-    private int findVictimIndex(int startIndex, int endIndex) {
+    @Override
+    protected int findVictimIndex(long blockNumber) {
+        int startIndex = geometry.setIndex(blockNumber) * associativity;
+        int endIndex = startIndex + associativity;
+        long ways = allowedWays();
+
         // First, look for an empty (invalid) line
         for (int i = startIndex; i < endIndex; i++) {
-            if (!lines[i].isValid())
+            if (isAllowed(ways, i - startIndex) && !lines[i].isValid())
                 return i;
         }
 
         // If set is full, use Replacement Policy
         if (replacementPolicy == ReplacementPolicy.RANDOM) {
-            Random rand = new Random();
-            return startIndex + rand.nextInt(associativity);
+            if (ways == -1L)
+                return startIndex + nextRandom(associativity);
+            // Pick the n-th allowed way
+            int n = nextRandom(Long.bitCount(ways));
+            for (int way = 0; ; way++)
+                if (isAllowed(ways, way) && n-- == 0)
+                    return startIndex + way;
         }
 
         // Logic for LRU and FIFO is identical here: find the minimum timestamp
         // Differences are handled when we UPDATE the timestamp ( Hit vs Miss)
-        int victimIndex = startIndex;
-        long minTime = usageTimestamps[victimIndex];
+        int victimIndex = -1;
+        long minTime = Long.MAX_VALUE;
 
-        for (int i = startIndex + 1; i < endIndex; i++) {
-            if (usageTimestamps[i] < minTime) {
+        for (int i = startIndex; i < endIndex; i++) {
+            if (isAllowed(ways, i - startIndex) && usageTimestamps[i] < minTime) {
                 minTime = usageTimestamps[i];
                 victimIndex = i;
             }
@@ -175,50 +93,61 @@ public class SetAssociativeCache implements CacheMemory {
         return victimIndex;
     }
 
-    private void flushDirtyLineToMemory(CacheLine line, int index) {
-        int setIndex = index / associativity;
-        int oldBlockNumber = (line.getTag() * numSets) + setIndex;
-        int oldBaseAddress = oldBlockNumber * blockSize;
+    // Ways (bit i = way i) the current access may allocate into; every way unless a subclass partitions the set
+    protected long allowedWays() {
+        return -1L;
+    }
 
-        String[] data = line.getData();
-        for (int i = 0; i < data.length; i++) {
-            memory.write(oldBaseAddress + i, data[i]);
-        }
-        this.lastEvictionMessage = "Evicted dirty block " + oldBlockNumber + " to memory and" + "wrote to address " + oldBaseAddress;
+    private static boolean isAllowed(long ways, int way) {
+        return ((ways >>> way) & 1) != 0;
+    }
+
+    @Override
+    protected long blockNumberOf(int lineIndex) {
+        int setIndex = lineIndex / associativity;
+        return geometry.blockNumber(lines[lineIndex].getTag(), setIndex);
     }
 
     @Override
     public String getLastAccessDetails() {
-        return String.format("[Block: %d | Set: %d | Tag: %d]", lastBlockNumber, lastSetIndex, lastTag);
+        return String.format("[Block: %d | Set: %d | Tag: %d]", lastBlockNumber, geometry.setIndex(lastBlockNumber), lastTag);
     }
 
+    public ReplacementPolicy getReplacementPolicy() {
+        return replacementPolicy;
+    }
 
     @Override
-    public CacheLine[] getLines() {
-        return lines;
+    protected long replacementStamp(int lineIndex) {
+        return usageTimestamps[lineIndex];
     }
 
     @Override
-    public int getHits() {
-        return hits;
+    protected void setReplacementStamp(int lineIndex, long stamp) {
+        usageTimestamps[lineIndex] = stamp;
     }
 
     @Override
-    public int getMisses() {
-        return misses;
+    protected long replacementClock() {
+        return operationCounter;
     }
 
-    public String getLastMissType() {
-        return lastMissType;
+    @Override
+    protected void setReplacementClock(long clock) {
+        operationCounter = clock;
     }
 
     @Override
-    public int getBlockSize() {
-        return blockSize;
+    protected void saveReplacementState(DataOutputStream out) throws IOException {
+        for (long timestamp : usageTimestamps)
+            Checkpoint.writeVarLong(out, timestamp);
+        Checkpoint.writeVarLong(out, operationCounter);
     }
 
     @Override
-    public String getLastEvictionMessage() {
-        return lastEvictionMessage;
+    protected void restoreReplacementState(DataInputStream in) throws IOException {
+        for (int i = 0; i < usageTimestamps.length; i++)
+            usageTimestamps[i] = Checkpoint.readVarLong(in);
+        operationCounter = Checkpoint.readVarLong(in);
     }
 }
@@ -0,0 +1,83 @@
+package cache_memory_simulator;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from tag to line index, using primitive arrays and linear probing.
+ * Removal uses backward-shift deletion, so there are no tombstones and lookups never degrade.
+ * The table is sized once for a fixed number of entries (the number of lines) and never grows.
+ */
+final class TagIndex {
+    private static final int EMPTY = -1;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+
+    TagIndex(int maxEntries) {
+        // Keep the load factor at or below 50%
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(values, EMPTY);
+    }
+
+    // Returns the line holding the tag, or -1
+    int get(long tag) {
+        int slot = slot(tag);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == tag)
+                return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    void put(long tag, int line) {
+        int slot = slot(tag);
+        while (values[slot] != EMPTY && keys[slot] != tag)
+            slot = (slot + 1) & mask;
+        keys[slot] = tag;
+        values[slot] = line;
+    }
+
+    void remove(long tag) {
+        int slot = slot(tag);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == tag) {
+                shiftBack(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, EMPTY);
+    }
+
+    // Pulls later entries of the probe run into the freed slot so every entry stays reachable
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == EMPTY)
+                break;
+            int home = slot(keys[slot]);
+            // Move the entry only if its home slot is not cyclically within (hole, slot]
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = EMPTY;
+    }
+
+    private int slot(long tag) {
+        long h = tag * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,248 @@
+package cache_memory_simulator;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for recorded address traces. Subclasses parse one format each on top of a
+ * small byte-level tokenizer, which avoids building a String per line: the readers are meant to
+ * keep up with the cache, not be the bottleneck.
+ * <p>
+ * Traces record byte addresses, while the simulator addresses words of {@code wordBytes} bytes
+ * ({@link Memory#WORD_BYTES} by default). Each access is turned into one access per word it
+ * touches, so an access that straddles a word (or block) boundary counts once per word.
+ * <p>
+ * Loads map to reads and stores to writes; a modify (read-modify-write) is returned as reads of
+ * its words followed by writes to them. Gzip-compressed files are detected by their magic number
+ * and decompressed on the fly.
+ */
+public abstract class TraceReader implements AddressStream, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final int wordBytes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long lineNumber = 1;
+
+    // Words of the access being returned: nextWord up to lastWord, inclusive
+    private long firstWord;
+    private long nextWord;
+    private long lastWord;
+    private boolean write;
+    private boolean ready;          // words of a parsed access are waiting to be returned
+    private boolean modifyPending;  // the store half of a modify still has to be returned
+
+    protected TraceReader(InputStream in, int wordBytes) {
+        if (wordBytes < 1)
+            throw new IllegalArgumentException("Word size must be at least 1 byte, got " + wordBytes);
+        this.in = in;
+        this.wordBytes = wordBytes;
+    }
+
+    // Picks the format from the file name: *.din / *.din.gz are Dinero traces, anything else is lackey output
+    public static TraceReader open(Path path) throws IOException {
+        return open(path, formatOf(path), Memory.WORD_BYTES);
+    }
+
+    public static TraceReader open(Path path, String format) throws IOException {
+        return open(path, format, Memory.WORD_BYTES);
+    }
+
+    public static String formatOf(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".din") || name.endsWith(".din.gz") ? "din" : "lackey";
+    }
+
+    public static TraceReader open(Path path, String format, int wordBytes) throws IOException {
+        InputStream in = openStream(path);
+        return switch (format.toLowerCase()) {
+            case "din", "dinero" -> new DineroTraceReader(in, false, wordBytes);
+            case "lackey", "valgrind" -> new LackeyTraceReader(in, false, wordBytes);
+            default -> {
+                in.close();
+                throw new IllegalArgumentException("Unknown trace format '" + format + "'");
+            }
+        };
+    }
+
+    // Opens a file, transparently unwrapping gzip if the stream starts with the gzip magic number
+    static InputStream openStream(Path path) throws IOException {
+        BufferedInputStream raw = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        raw.mark(2);
+        int first = raw.read();
+        int second = raw.read();
+        raw.reset();
+        if (first == 0x1f && second == 0x8b)
+            return new GZIPInputStream(raw, BUFFER_SIZE);
+        return raw;
+    }
+
+    // Parses one line of input, calling emit() for each access it contains. Returns false at end of input.
+    protected abstract boolean parseRecord() throws IOException;
+
+    // An access of size bytes at a byte address; a size of 0 is taken as 1
+    protected final void emit(long byteAddress, long size, boolean write) {
+        this.firstWord = Long.divideUnsigned(byteAddress, wordBytes);
+        this.nextWord = firstWord;
+        // Clamped at the top of the address space instead of wrapping around
+        long lastByte = byteAddress + Math.max(size, 1) - 1;
+        this.lastWord = Long.compareUnsigned(lastByte, byteAddress) < 0
+                ? Long.divideUnsigned(-1L, wordBytes)
+                : Long.divideUnsigned(lastByte, wordBytes);
+        this.write = write;
+        this.ready = true;
+    }
+
+    protected final void emitModify(long byteAddress, long size) {
+        emit(byteAddress, size, false);
+        this.modifyPending = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready)
+            return true;
+        if (modifyPending) {
+            modifyPending = false;
+            nextWord = firstWord;
+            write = true;
+            ready = true;
+            return true;
+        }
+        try {
+            while (!ready) {
+                if (!parseRecord())
+                    return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long nextLong() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        long word = nextWord;
+        if (word == lastWord)
+            ready = false;
+        else
+            nextWord++;
+        return word;
+    }
+
+    @Override
+    public boolean isWrite() {
+        return write;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ---- Byte-level tokenizer ----
+
+    protected final int peek() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position] & 0xff;
+    }
+
+    protected final int read() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        int c = buffer[position++] & 0xff;
+        if (c == '\n')
+            lineNumber++;
+        return c;
+    }
+
+    protected final void skipBlanks() throws IOException {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t')
+            position++;
+    }
+
+    // Consumes the rest of the current line, including the line terminator
+    protected final void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+        }
+    }
+
+    protected final long readDecimal() throws IOException {
+        long value = 0;
+        int digits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            position++;
+            if (++digits > 18)
+                throw malformed("number too long");
+        }
+        if (digits == 0)
+            throw malformed("expected a decimal number");
+        return value;
+    }
+
+    // Reads a hexadecimal number with an optional 0x prefix; up to 64 bits
+    protected final long readHex() throws IOException {
+        if (peek() == '0') {
+            position++;
+            int x = peek();
+            if (x == 'x' || x == 'X') {
+                position++;
+            } else {
+                position--;
+            }
+        }
+        long value = 0;
+        int digits = 0;
+        while (true) {
+            int c = peek();
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else if (c >= 'A' && c <= 'F') digit = c - 'A' + 10;
+            else break;
+            value = (value << 4) | digit;
+            position++;
+            if (++digits > 16)
+                throw malformed("address wider than 64 bits");
+        }
+        if (digits == 0)
+            throw malformed("expected a hexadecimal address");
+        return value;
+    }
+
+    protected final IOException malformed(String what) {
+        return new IOException("Malformed trace at line " + lineNumber + ": " + what);
+    }
+
+    private boolean fill() throws IOException {
+        // Keep one byte of history so readHex() can step back over a lone '0'
+        if (limit > 0) {
+            buffer[0] = buffer[limit - 1];
+            position = 1;
+            limit = 1;
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n <= 0) {
+            position = limit;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+}
@@ -0,0 +1,375 @@
+package cache_memory_simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless driver: replays an {@link AddressStream} through a cache without starting the UI.
+ * <p>
+ * Example: {@code TraceRunner --workload matmul,n=32 --lines 64 --block 8 --mapping set --k 4}
+ * or, for a recorded trace, {@code TraceRunner --trace app.din.gz --format din}. Trace byte addresses
+ * are converted to words of {@code --word-bytes} bytes (default {@value Memory#WORD_BYTES}).
+ * <p>
+ * To fork experiments from one warm state, run the warm-up once with {@code --limit N --checkpoint-out warm.ckpt},
+ * then start each experiment with {@code --checkpoint-in warm.ckpt --skip N}.
+ * <p>
+ * With {@code --page 2m} (or {@code --tlb}) the stream is treated as virtual addresses and translated
+ * through TLBs and a page walk first; see {@link VirtualMemory}.
+ * <p>
+ * With {@code --threads N} the workload is replayed by N threads at once, each with its own seed,
+ * against one {@link ConcurrentSetAssociativeCache}.
+ * <p>
+ * With {@code --window N} the hit ratio, miss types and writebacks are also tracked per N accesses
+ * and split into phases (see {@link WindowedMetrics}); {@code --series FILE} writes them as CSV.
+ */
+public final class TraceRunner {
+    // Traces only carry addresses, so replayed stores write this marker value
+    static final String STORE_DATA = "*";
+
+    private TraceRunner() {
+    }
+
+    public static Result run(CacheMemory cache, AddressStream stream) {
+        return run(cache, stream, Long.MAX_VALUE);
+    }
+
+    // Replays at most `limit` accesses from the stream
+    public static Result run(CacheMemory cache, AddressStream stream, long limit) {
+        return run(cache, stream, limit, null);
+    }
+
+    // As above, also feeding every access to the windowed metrics unless they are null
+    public static Result run(CacheMemory cache, AddressStream stream, long limit, WindowedMetrics metrics) {
+        long reads = 0, writes = 0, hits = 0;
+        PartitionedCache shared = cache instanceof PartitionedCache partitioned ? partitioned : null;
+        long start = System.nanoTime();
+        while (reads + writes < limit && stream.hasNext()) {
+            long address = stream.nextLong();
+            if (shared != null)
+                shared.setTenant(stream.tenant());
+            boolean hit;
+            if (stream.isWrite()) {
+                hit = cache.write(address, STORE_DATA);
+                writes++;
+            } else {
+                hit = cache.read(address);
+                reads++;
+            }
+            if (hit) hits++;
+            if (metrics != null)
+                metrics.record(hit);
+        }
+        return new Result(reads, writes, hits, System.nanoTime() - start);
+    }
+
+    // Replays one stream per thread against the same cache, each for at most `limit` accesses;
+    // nanos is the wall-clock time of the whole run
+    public static Result runParallel(ConcurrentSetAssociativeCache cache, List<AddressStream> streams, long limit) {
+        ExecutorService pool = Executors.newFixedThreadPool(streams.size());
+        try {
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (AddressStream stream : streams)
+                tasks.add(() -> replayConcurrently(cache, stream, limit));
+            long start = System.nanoTime();
+            List<Future<Result>> futures = pool.invokeAll(tasks);
+            long reads = 0, writes = 0, hits = 0;
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                reads += result.reads();
+                writes += result.writes();
+                hits += result.hits();
+            }
+            return new Result(reads, writes, hits, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parallel replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay thread failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Result replayConcurrently(ConcurrentSetAssociativeCache cache, AddressStream stream, long limit) {
+        long reads = 0, writes = 0, hits = 0;
+        long start = System.nanoTime();
+        while (reads + writes < limit && stream.hasNext()) {
+            long address = stream.nextLong();
+            boolean write = stream.isWrite();
+            if (cache.access(address, write, STORE_DATA).hit()) hits++;
+            if (write) writes++;
+            else reads++;
+        }
+        return new Result(reads, writes, hits, System.nanoTime() - start);
+    }
+
+    public record Result(long reads, long writes, long hits, long nanos) {
+        public long accesses() {
+            return reads + writes;
+        }
+
+        public long misses() {
+            return accesses() - hits;
+        }
+
+        public double hitRatio() {
+            return accesses() == 0 ? 0 : (double) hits / accesses();
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("accesses=%d (reads=%d, writes=%d) hits=%d misses=%d hitRatio=%.4f time=%.3fs (%.1f M accesses/s)",
+                    accesses(), reads, writes, hits, misses(), hitRatio(), seconds,
+                    seconds == 0 ? 0 : accesses() / seconds / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("workload") && !options.containsKey("trace") && !options.containsKey("tenants")) {
+            System.err.println("Usage: TraceRunner (--workload <spec> | --trace <file> [--format din|lackey] [--word-bytes N] | --tenants <spec>;<spec>...)");
+            System.err.println("       [--memory N] [--lines N] [--block N] [--sector N]");
+            System.err.println("       [--mapping direct|set|fully] [--k N] [--replacement LRU|FIFO|RANDOM]");
+            System.err.println("       [--write-policy WRITE_THROUGH|WRITE_BACK] [--limit N]");
+            System.err.println("       [--allocation WRITE_ALLOCATE|NO_WRITE_ALLOCATE|WRITE_VALIDATE] [--write-combining ENTRIES]");
+            System.err.println("       [--page 4k|2m|1g|WORDS] [--tlb ENTRIES[:WAYS]] [--l2-tlb ENTRIES[:WAYS]]");
+            System.err.println("       [--threads N] [--window N] [--series FILE]");
+            System.err.println("       [--partition none|static|ucp] [--way-masks MASK,MASK...] [--epoch N]");
+            System.err.println("       [--sample-sets FRACTION] [--sample-period N --sample-window N] [--seed N]");
+            System.err.println("       [--checkpoint-in FILE] [--checkpoint-out FILE] [--skip N]");
+            System.exit(2);
+        }
+
+        Memory memory = new Memory(Integer.parseInt(options.getOrDefault("memory", "65536")));
+        CacheMemory cache = buildCache(options, memory);
+        VirtualMemory virtualMemory = buildVirtualMemory(options, cache);
+        long limit = Long.parseLong(options.getOrDefault("limit", String.valueOf(Long.MAX_VALUE)));
+        long skip = Long.parseLong(options.getOrDefault("skip", "0"));
+
+        if (options.containsKey("checkpoint-in"))
+            Checkpoint.restore(Path.of(options.get("checkpoint-in")), cache, memory);
+
+        if (options.containsKey("trace")) {
+            Path path = Path.of(options.get("trace"));
+            try (TraceReader reader = TraceReader.open(path, options.getOrDefault("format", TraceReader.formatOf(path)),
+                    Integer.parseInt(options.getOrDefault("word-bytes", String.valueOf(Memory.WORD_BYTES))))) {
+                skip(reader, skip);
+                replay(options, cache, translated(virtualMemory, reader), limit);
+            }
+        } else if (cache instanceof ConcurrentSetAssociativeCache concurrent) {
+            List<AddressStream> streams = threadStreams(options);
+            for (AddressStream stream : streams)
+                skip(stream, skip);
+            System.out.println(runParallel(concurrent, streams, limit));
+        } else {
+            AddressStream stream = options.containsKey("tenants")
+                    ? tenantStream(options.get("tenants"))
+                    : Workloads.fromSpec(options.get("workload"));
+            skip(stream, skip);
+            replay(options, cache, translated(virtualMemory, stream), limit);
+        }
+
+        // Saved before the drain below, so a resumed run continues with the same pending stores
+        if (options.containsKey("checkpoint-out"))
+            Checkpoint.save(Path.of(options.get("checkpoint-out")), cache, memory);
+
+        cache.drainWriteBuffer();
+        System.out.println("memory traffic: " + memory.getTrafficSummary() + " combinedStores=" + cache.getCombinedStores()
+                + " bytesSaved=" + cache.getWordsSaved() * Memory.WORD_BYTES + " writebacks=" + cache.getWritebacks());
+        if (virtualMemory != null)
+            System.out.println(virtualMemory.getSummary());
+        if (cache instanceof PartitionedCache shared)
+            System.out.println(shared.getTenantSummary());
+    }
+
+    // One copy of the workload per thread; thread i runs it with seed (--seed) + i
+    private static List<AddressStream> threadStreams(Map<String, String> options) {
+        int threads = Integer.parseInt(options.get("threads"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        List<AddressStream> streams = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            streams.add(Workloads.fromSpec(options.get("workload") + ",seed=" + (seed + i)));
+        return streams;
+    }
+
+    // Workload specs separated by ';', played round-robin, one tenant each; give them distinct base= regions
+    static AddressStream tenantStream(String specs) {
+        String[] parts = specs.split(";");
+        AddressStream[] streams = new AddressStream[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            streams[i] = Workloads.fromSpec(parts[i]);
+        return Workloads.interleave(streams);
+    }
+
+    private static AddressStream translated(VirtualMemory virtualMemory, AddressStream stream) {
+        return virtualMemory == null ? stream : virtualMemory.translate(stream);
+    }
+
+    // Fast-forwards a stream without simulating, e.g. past the part already captured in a checkpoint
+    static void skip(AddressStream stream, long count) {
+        for (long i = 0; i < count && stream.hasNext(); i++)
+            stream.nextLong();
+    }
+
+    private static void replay(Map<String, String> options, CacheMemory cache, AddressStream stream, long limit) throws IOException {
+        if (!options.containsKey("sample-sets") && !options.containsKey("sample-period")) {
+            if (!options.containsKey("window") && !options.containsKey("series")) {
+                System.out.println(run(cache, stream, limit));
+                return;
+            }
+            WindowedMetrics metrics = new WindowedMetrics(cache,
+                    Integer.parseInt(options.getOrDefault("window", String.valueOf(WindowedMetrics.DEFAULT_WINDOW))));
+            System.out.println(run(cache, stream, limit, metrics));
+            System.out.println(metrics.getPhaseSummary());
+            if (options.containsKey("series")) {
+                try (Writer out = Files.newBufferedWriter(Path.of(options.get("series")))) {
+                    metrics.writeCsv(out);
+                }
+            }
+            return;
+        }
+        SampledRunner.Plan plan = new SampledRunner.Plan(
+                cache.getGeometry(),
+                Double.parseDouble(options.getOrDefault("sample-sets", "1")),
+                Long.parseLong(options.getOrDefault("sample-period", "0")),
+                Long.parseLong(options.getOrDefault("sample-window", "0")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        System.out.println(SampledRunner.run(cache, stream, plan, limit));
+    }
+
+    static CacheMemory buildCache(Map<String, String> options, Memory memory) {
+        int lines = Integer.parseInt(options.getOrDefault("lines", "64"));
+        int blockSize = Integer.parseInt(options.getOrDefault("block", "8"));
+        ReplacementPolicy replacement = ReplacementPolicy.valueOf(options.getOrDefault("replacement", "LRU").toUpperCase());
+        WritePolicy writePolicy = WritePolicy.valueOf(options.getOrDefault("write-policy", "WRITE_BACK").toUpperCase());
+        AllocationPolicy allocation = AllocationPolicy.valueOf(options.getOrDefault("allocation", "WRITE_ALLOCATE").toUpperCase());
+        int combining = Integer.parseInt(options.getOrDefault("write-combining", "0"));
+        int sectorSize = Integer.parseInt(options.getOrDefault("sector", String.valueOf(blockSize)));
+
+        // Windowed metrics need every access simulated
+        if ((options.containsKey("window") || options.containsKey("series"))
+                && (options.containsKey("sample-sets") || options.containsKey("sample-period")))
+            throw new IllegalArgumentException("--window and --series cannot be combined with sampling");
+        if (options.containsKey("tenants"))
+            return buildSharedCache(options, memory, lines, blockSize, replacement, writePolicy, allocation, combining, sectorSize);
+        if (options.containsKey("threads")) {
+            if (!options.containsKey("workload") || options.containsKey("trace"))
+                throw new IllegalArgumentException("--threads replays a --workload; traces and tenants are single-threaded");
+            if (options.containsKey("page") || options.containsKey("tlb") || options.containsKey("l2-tlb")
+                    || options.containsKey("sample-sets") || options.containsKey("sample-period"))
+                throw new IllegalArgumentException("--threads does not support address translation or sampling");
+            if (!options.getOrDefault("mapping", "set").equalsIgnoreCase("set"))
+                throw new IllegalArgumentException("--threads replays through a set-associative cache; use --k 1 for "
+                        + "direct mapping or --k equal to --lines for a fully associative cache");
+            for (String option : List.of("allocation", "write-combining", "sector", "window", "series"))
+                if (options.containsKey(option))
+                    throw new IllegalArgumentException("--threads does not support --" + option
+                            + "; the concurrent cache is write-allocate only and reports totals only");
+            return new ConcurrentSetAssociativeCache(lines, blockSize, Integer.parseInt(options.getOrDefault("k", "4")),
+                    memory, replacement, writePolicy);
+        }
+
+        return switch (options.getOrDefault("mapping", "set").toLowerCase()) {
+            case "direct" -> new DirectMappedCache(lines, blockSize, memory, writePolicy, allocation, combining, sectorSize);
+            case "fully" -> new FullyAssociativeCache(lines, blockSize, memory, replacement, writePolicy, allocation, combining, sectorSize);
+            case "set" -> new SetAssociativeCache(lines, blockSize, Integer.parseInt(options.getOrDefault("k", "4")),
+                    memory, replacement, writePolicy, allocation, combining, sectorSize);
+            default -> throw new IllegalArgumentException("Unknown mapping '" + options.get("mapping") + "'");
+        };
+    }
+
+    // A set-associative cache shared by the tenants; "none" lets every tenant allocate into every way
+    private static PartitionedCache buildSharedCache(Map<String, String> options, Memory memory, int lines, int blockSize,
+                                                     ReplacementPolicy replacement, WritePolicy writePolicy,
+                                                     AllocationPolicy allocation, int combining, int sectorSize) {
+        int tenants = options.get("tenants").split(";").length;
+        int k = Integer.parseInt(options.getOrDefault("k", "16"));
+        String partition = options.getOrDefault("partition", "ucp").toLowerCase();
+        long[] masks;
+        long epoch = 0;
+        switch (partition) {
+            case "none" -> masks = PartitionedCache.sharedMasks(tenants, k);
+            case "static" -> masks = options.containsKey("way-masks")
+                    ? parseMasks(options.get("way-masks"), tenants)
+                    : PartitionedCache.equalMasks(tenants, k);
+            case "ucp" -> {
+                masks = PartitionedCache.equalMasks(tenants, k);
+                epoch = Long.parseLong(options.getOrDefault("epoch", "100000"));
+            }
+            default -> throw new IllegalArgumentException("Unknown partitioning '" + partition + "'");
+        }
+        return new PartitionedCache(lines, blockSize, k, memory, replacement, writePolicy, allocation, combining, sectorSize,
+                masks, epoch);
+    }
+
+    private static long[] parseMasks(String text, int tenants) {
+        String[] parts = text.split(",");
+        if (parts.length != tenants)
+            throw new IllegalArgumentException("Expected " + tenants + " way masks, got " + parts.length);
+        long[] masks = new long[tenants];
+        for (int i = 0; i < tenants; i++)
+            masks[i] = Long.decode(parts[i].trim());
+        return masks;
+    }
+
+    // Translation is only simulated when a page size or TLB is given; defaults are a 64-entry 4-way L1
+    // TLB and a 1536-entry 12-way L2 TLB over 4K pages
+    static VirtualMemory buildVirtualMemory(Map<String, String> options, CacheMemory cache) {
+        if (!options.containsKey("page") && !options.containsKey("tlb") && !options.containsKey("l2-tlb"))
+            return null;
+        // TLBs, page table and frame allocation are not part of a checkpoint, and skipped accesses map no pages
+        for (String option : List.of("checkpoint-in", "checkpoint-out", "skip"))
+            if (options.containsKey(option))
+                throw new IllegalArgumentException("Address translation (--page, --tlb, --l2-tlb) does not support --" + option);
+        long pageSize = parseSize(options.getOrDefault("page", "4k"));
+        int[] l1 = parseTlb(options.getOrDefault("tlb", "64:4"));
+        int[] l2 = parseTlb(options.getOrDefault("l2-tlb", "1536:12"));
+        ReplacementPolicy replacement = ReplacementPolicy.valueOf(options.getOrDefault("replacement", "LRU").toUpperCase());
+        return new VirtualMemory(cache, pageSize, l1[0], l1[1], l2[0], l2[1], replacement);
+    }
+
+    // "ENTRIES:WAYS", or just "ENTRIES" for a fully-associative TLB; "0" disables an L2 TLB
+    private static int[] parseTlb(String spec) {
+        String[] parts = spec.split(":");
+        int entries = Integer.parseInt(parts[0].trim());
+        int ways = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : entries;
+        return new int[]{entries, ways};
+    }
+
+    // Word counts with an optional k/m/g suffix, e.g. "2m" for a 2M-word huge page
+    static long parseSize(String text) {
+        String value = text.trim().toLowerCase();
+        int shift = switch (value.charAt(value.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        if (shift != 0)
+            value = value.substring(0, value.length() - 1);
+        return Long.parseLong(value) << shift;
+    }
+
+    // Accepts "--key value" pairs
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Expected '--option value', got '" + args[i] + "'");
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
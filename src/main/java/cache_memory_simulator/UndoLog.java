@@ -0,0 +1,132 @@
+package cache_memory_simulator;
+
+import java.util.Arrays;
+
+/**
+ * Before-images of everything a run of accesses overwrote, so the accesses can be rolled back one
+ * at a time, newest first. The cache and memory report each line, word and memory cell just before
+ * changing it; counters and the write-combining buffer are saved when an access begins.
+ * <p>
+ * Entries are fixed-size slots in a primitive array plus one reference each (an old data array or
+ * word), so a typical access costs a few dozen bytes and no per-entry objects.
+ */
+final class UndoLog {
+    private static final int SLOT = 7;
+    private static final int SCALARS = 0, TRAFFIC = 1, LINE = 2, WORD = 3, MEMORY = 4, SEEN = 5;
+
+    private final AbstractCache cache;
+    private final Memory memory;
+
+    private long[] values = new long[SLOT * 256];
+    private Object[] refs = new Object[256];
+    private int entries;
+    // Index of the first entry of each access
+    private int[] accessStarts = new int[64];
+    private int accesses;
+
+    UndoLog(AbstractCache cache, Memory memory) {
+        this.cache = cache;
+        this.memory = memory;
+    }
+
+    void begin() {
+        if (accesses == accessStarts.length)
+            accessStarts = Arrays.copyOf(accessStarts, accesses * 2);
+        accessStarts[accesses++] = entries;
+        add(SCALARS, cache.hits, cache.misses, cache.wordsSaved, cache.replacementClock(), cache.randomState, cache.writebacks, null);
+        add(TRAFFIC, memory.getWordsRead(), memory.getWordsWritten(), memory.getReadBursts(), memory.getWriteBursts(), 0, 0,
+                cache.saveWriteBuffer());
+    }
+
+    void line(int lineIndex) {
+        // The first image of a line within an access is the one to restore
+        for (int e = accessStarts[accesses - 1]; e < entries; e++)
+            if (values[e * SLOT] == LINE && values[e * SLOT + 1] == lineIndex)
+                return;
+        CacheLine line = cache.lines[lineIndex];
+        add(LINE, lineIndex, line.getTag(), (line.isValid() ? 1 : 0) | (line.isDirty() ? 2 : 0),
+                line.getValidWords(), line.getDirtyWords(), cache.replacementStamp(lineIndex), line.getData());
+    }
+
+    void word(int lineIndex, int offset) {
+        add(WORD, lineIndex, offset, 0, 0, 0, 0, cache.lines[lineIndex].getData()[offset]);
+    }
+
+    void memoryWord(long address, String oldData) {
+        add(MEMORY, address, 0, 0, 0, 0, 0, oldData);
+    }
+
+    void seenBlock(long blockNumber) {
+        add(SEEN, blockNumber, 0, 0, 0, 0, 0, null);
+    }
+
+    int size() {
+        return accesses;
+    }
+
+    void clear() {
+        Arrays.fill(refs, 0, entries, null);
+        entries = 0;
+        accesses = 0;
+    }
+
+    // Rolls back the newest access; call cache.replacementStateRestored() once done undoing
+    void undoLast() {
+        int start = accessStarts[--accesses];
+        for (int e = entries - 1; e >= start; e--) {
+            undo(e);
+            refs[e] = null;
+        }
+        entries = start;
+    }
+
+    private void undo(int entry) {
+        int v = entry * SLOT;
+        switch ((int) values[v]) {
+            case SCALARS -> {
+                cache.hits = values[v + 1];
+                cache.misses = values[v + 2];
+                cache.wordsSaved = values[v + 3];
+                cache.setReplacementClock(values[v + 4]);
+                cache.randomState = values[v + 5];
+                cache.writebacks = values[v + 6];
+            }
+            case TRAFFIC -> {
+                memory.restoreTraffic(values[v + 1], values[v + 2], values[v + 3], values[v + 4]);
+                if (refs[entry] != null)
+                    cache.restoreWriteBuffer((byte[]) refs[entry]);
+            }
+            case LINE -> {
+                int lineIndex = (int) values[v + 1];
+                CacheLine line = cache.lines[lineIndex];
+                line.setTag(values[v + 2]);
+                line.setValid((values[v + 3] & 1) != 0);
+                line.setDirty((values[v + 3] & 2) != 0);
+                line.setValidWords(values[v + 4]);
+                line.setDirtyWords(values[v + 5]);
+                cache.setReplacementStamp(lineIndex, values[v + 6]);
+                line.setData((String[]) refs[entry]);
+            }
+            case WORD -> cache.lines[(int) values[v + 1]].getData()[(int) values[v + 2]] = (String) refs[entry];
+            case MEMORY -> memory.restoreWord(values[v + 1], (String) refs[entry]);
+            case SEEN -> cache.seenBlocks.remove(values[v + 1]);
+            default -> throw new IllegalStateException("Corrupt undo log entry " + values[v]);
+        }
+    }
+
+    private void add(int kind, long a, long b, long c, long d, long e, long f, Object ref) {
+        if (entries == refs.length) {
+            refs = Arrays.copyOf(refs, entries * 2);
+            values = Arrays.copyOf(values, entries * 2 * SLOT);
+        }
+        int v = entries * SLOT;
+        values[v] = kind;
+        values[v + 1] = a;
+        values[v + 2] = b;
+        values[v + 3] = c;
+        values[v + 4] = d;
+        values[v + 5] = e;
+        values[v + 6] = f;
+        refs[entries++] = ref;
+    }
+}
@@ -0,0 +1,219 @@
+package cache_memory_simulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Address translation in front of a physically addressed cache: an L1 TLB, an optional L2 TLB,
+ * and a radix page table walked on a TLB miss.
+ * <p>
+ * The TLBs reuse {@link SetAssociativeCache} with one-word blocks, so a virtual page number is
+ * simply the "address" looked up in them. Pages are mapped on first touch. Page-table nodes hold
+ * 512 one-word entries and live in the same physical address space as the data, so every PTE read
+ * of a walk goes through the data cache and competes with the program's own data.
+ * <p>
+ * Walk cost follows a simple latency model: {@link #CACHE_HIT_CYCLES} for a PTE found in the data
+ * cache and {@link #MEMORY_CYCLES} for one that misses. Larger pages need fewer levels per walk
+ * and cover more memory per TLB entry.
+ */
+public class VirtualMemory {
+    public static final int VIRTUAL_ADDRESS_BITS = 48;
+    public static final int BITS_PER_LEVEL = 9; // 512 entries per page-table node
+    public static final int L2_TLB_CYCLES = 7;
+    public static final int CACHE_HIT_CYCLES = 4;
+    public static final int MEMORY_CYCLES = 100;
+
+    private static final long VIRTUAL_MASK = (1L << VIRTUAL_ADDRESS_BITS) - 1;
+
+    private final CacheMemory dataCache;
+    private final int pageBits;
+    private final int levels;
+    private final SetAssociativeCache l1Tlb;
+    private final SetAssociativeCache l2Tlb; // null when there is no second level
+
+    // Page-table contents: for each level, the physical base of the node covering a VPN prefix
+    private final List<Map<Long, Long>> tableNodes;
+    // Last level: the physical frame base of each mapped page
+    private final Map<Long, Long> pageFrames = new HashMap<>();
+    private long nextPhysical = 0;
+
+    private long translations;
+    private long l1Misses;
+    private long l2Misses;
+    private long walks;
+    private long walkCycles;
+    private long l2Cycles;
+    private long pteReads;
+    private long pteHits;
+
+    public VirtualMemory(CacheMemory dataCache, long pageSize, int l1Entries, int l1Ways,
+                         int l2Entries, int l2Ways, ReplacementPolicy replacementPolicy) {
+        if (pageSize < 1 << BITS_PER_LEVEL || Long.bitCount(pageSize) != 1)
+            throw new IllegalArgumentException("Page size must be a power of two of at least " + (1 << BITS_PER_LEVEL) + " words, got " + pageSize);
+        this.dataCache = dataCache;
+        this.pageBits = Long.numberOfTrailingZeros(pageSize);
+        if (pageBits >= VIRTUAL_ADDRESS_BITS)
+            throw new IllegalArgumentException("Page size must be smaller than the " + VIRTUAL_ADDRESS_BITS + "-bit address space");
+        // e.g. 4K pages: 4 levels, 2M pages: 3 levels, 1G pages: 2 levels
+        this.levels = (VIRTUAL_ADDRESS_BITS - pageBits + BITS_PER_LEVEL - 1) / BITS_PER_LEVEL;
+
+        // TLB entries carry no data, so they are backed by an empty memory
+        this.l1Tlb = new SetAssociativeCache(l1Entries, 1, l1Ways, new Memory(0), replacementPolicy, WritePolicy.WRITE_BACK);
+        this.l2Tlb = l2Entries > 0
+                ? new SetAssociativeCache(l2Entries, 1, l2Ways, new Memory(0), replacementPolicy, WritePolicy.WRITE_BACK)
+                : null;
+
+        this.tableNodes = new ArrayList<>(levels);
+        for (int i = 0; i < levels; i++)
+            tableNodes.add(new HashMap<>());
+    }
+
+    // Physical address for a virtual one; a TLB miss walks the page table through the data cache
+    public long translate(long virtualAddress) {
+        translations++;
+        long vpn = (virtualAddress & VIRTUAL_MASK) >>> pageBits;
+        long offset = virtualAddress & ((1L << pageBits) - 1);
+
+        if (!l1Tlb.read(vpn)) {
+            l1Misses++;
+            boolean l2Hit = false;
+            if (l2Tlb != null) {
+                l2Cycles += L2_TLB_CYCLES;
+                l2Hit = l2Tlb.read(vpn);
+                if (!l2Hit) l2Misses++;
+            }
+            if (!l2Hit)
+                walk(vpn);
+        }
+        return frameOf(vpn) + offset;
+    }
+
+    // Wraps a stream so that every address it yields has been translated. For a shared cache the
+    // tenant is set before the walk, so its PTE reads are billed to the tenant that missed the TLB.
+    public AddressStream translate(AddressStream virtualStream) {
+        PartitionedCache shared = dataCache instanceof PartitionedCache partitioned ? partitioned : null;
+        return new AddressStream() {
+            @Override
+            public boolean hasNext() {
+                return virtualStream.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                long virtualAddress = virtualStream.nextLong();
+                if (shared != null)
+                    shared.setTenant(virtualStream.tenant());
+                return translate(virtualAddress);
+            }
+
+            @Override
+            public boolean isWrite() {
+                return virtualStream.isWrite();
+            }
+
+            @Override
+            public int tenant() {
+                return virtualStream.tenant();
+            }
+        };
+    }
+
+    // Reads one PTE per level, root first
+    private void walk(long vpn) {
+        walks++;
+        long nodeBase = node(0, 0);
+        for (int level = 0; level < levels; level++) {
+            int shift = (levels - 1 - level) * BITS_PER_LEVEL;
+            long pteAddress = nodeBase + ((vpn >>> shift) & ((1 << BITS_PER_LEVEL) - 1));
+            pteReads++;
+            if (dataCache.read(pteAddress)) {
+                pteHits++;
+                walkCycles += CACHE_HIT_CYCLES;
+            } else {
+                walkCycles += MEMORY_CYCLES;
+            }
+            if (level + 1 < levels)
+                nodeBase = node(level + 1, vpn >>> shift);
+        }
+    }
+
+    // Physical base of the node at a level covering the given VPN prefix, allocated on first use
+    private long node(int level, long prefix) {
+        return tableNodes.get(level).computeIfAbsent(prefix, p -> allocate(1L << BITS_PER_LEVEL));
+    }
+
+    private long frameOf(long vpn) {
+        return pageFrames.computeIfAbsent(vpn, v -> allocate(1L << pageBits));
+    }
+
+    // Bump allocator over physical memory; every region is aligned to its size
+    private long allocate(long size) {
+        long base = (nextPhysical + size - 1) & -size;
+        nextPhysical = base + size;
+        return base;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public long getPageSize() {
+        return 1L << pageBits;
+    }
+
+    public long getTranslations() {
+        return translations;
+    }
+
+    public long getL1Misses() {
+        return l1Misses;
+    }
+
+    public long getL2Misses() {
+        return l2Misses;
+    }
+
+    public long getWalks() {
+        return walks;
+    }
+
+    public long getPteReads() {
+        return pteReads;
+    }
+
+    public long getPteHits() {
+        return pteHits;
+    }
+
+    public long getWalkCycles() {
+        return walkCycles;
+    }
+
+    // Cycles spent in translation beyond an L1 TLB hit: L2 TLB lookups plus page walks
+    public long getTranslationCycles() {
+        return l2Cycles + walkCycles;
+    }
+
+    public long getMappedPages() {
+        return pageFrames.size();
+    }
+
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("page=%d words, %d-level walk, %d pages mapped%n", getPageSize(), levels, getMappedPages()));
+        summary.append(String.format("L1 TLB: %d misses of %d (%.4f)%n", l1Misses, translations, ratio(l1Misses, translations)));
+        if (l2Tlb != null)
+            summary.append(String.format("L2 TLB: %d misses of %d (%.4f)%n", l2Misses, l1Misses, ratio(l2Misses, l1Misses)));
+        summary.append(String.format("walks=%d walkCycles=%d (%.1f per walk) PTE reads=%d (%d cache hits)%n",
+                walks, walkCycles, walks == 0 ? 0 : (double) walkCycles / walks, pteReads, pteHits));
+        summary.append(String.format("translation cycles=%d (%.3f per access)",
+                getTranslationCycles(), translations == 0 ? 0 : (double) getTranslationCycles() / translations));
+        return summary.toString();
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+}
@@ -0,0 +1,235 @@
+package cache_memory_simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Hit ratio, miss-type mix and writebacks per window of N accesses, which show the program phases
+ * and warm-up that a cumulative hit ratio hides. Call {@link #record(boolean)} after every access to
+ * the cache, or feed recorded results to {@link #record(boolean, String, int)}; a trailing window
+ * with fewer than N accesses is not recorded.
+ * <p>
+ * Closed windows go into a ring buffer of primitive arrays that keeps the latest {@code capacity}
+ * windows. Each one is also compared with the average of the current phase, as the Manhattan
+ * distance between their signatures (hit ratio, the share of each miss type and writebacks per
+ * access, much like SimPoint compares basic-block vectors). A distance above the threshold starts
+ * a new phase. Totals are kept for every phase, even after its windows have left the ring, so
+ * warm-up can be told apart from steady state.
+ */
+public class WindowedMetrics {
+    public static final int DEFAULT_WINDOW = 10_000;
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final double DEFAULT_PHASE_THRESHOLD = 0.2;
+
+    // Miss types as reported by getLastMissType(); anything else (e.g. "Partial") counts as other
+    private static final String[] MISS_TYPES = {"Compulsory", "Capacity", "Conflict", "Sector"};
+    private static final int OTHER = MISS_TYPES.length;
+    private static final int KINDS = OTHER + 1;
+    // Signature: hit ratio, one share per miss kind, writebacks per access
+    private static final int SIGNATURE = KINDS + 2;
+
+    private final CacheMemory cache;
+    private final int window;
+    private final int capacity;
+    private final double phaseThreshold;
+
+    // Ring buffer: closed window w lives in slot w % capacity
+    private final int[] hits;
+    private final int[] misses; // indexed by slot * KINDS + kind
+    private final int[] writebacks;
+    private final int[] phases;
+    private long closedWindows = 0;
+
+    // The window being filled
+    private int accesses = 0;
+    private int windowHits = 0;
+    private final int[] windowMisses = new int[KINDS];
+    private int windowWritebacks = 0;
+    // Cache writeback count at the last record(boolean), to find the writebacks of each access
+    private long lastWritebacks;
+
+    // Per-phase totals; phase p starts at window phaseStarts[p]
+    private long[] phaseStarts = new long[16];
+    private long[] phaseHits = new long[16];
+    private long[] phaseWritebacks = new long[16];
+    private int phaseCount = 0;
+    // Sum of the signatures of the current phase's windows
+    private final double[] phaseSignature = new double[SIGNATURE];
+    private int phaseWindows = 0;
+
+    public WindowedMetrics(CacheMemory cache, int window, int capacity, double phaseThreshold) {
+        if (window < 1)
+            throw new IllegalArgumentException("Window must be at least 1 access, got " + window);
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1 window, got " + capacity);
+        this.cache = cache;
+        this.window = window;
+        this.capacity = capacity;
+        this.phaseThreshold = phaseThreshold;
+        this.hits = new int[capacity];
+        this.misses = new int[capacity * KINDS];
+        this.writebacks = new int[capacity];
+        this.phases = new int[capacity];
+        this.lastWritebacks = cache.getWritebacks();
+    }
+
+    public WindowedMetrics(CacheMemory cache, int window) {
+        this(cache, window, DEFAULT_CAPACITY, DEFAULT_PHASE_THRESHOLD);
+    }
+
+    // Counts the access just made; returns true if it closed a window that starts a new phase
+    public boolean record(boolean hit) {
+        long totalWritebacks = cache.getWritebacks();
+        int writebacks = (int) (totalWritebacks - lastWritebacks);
+        lastWritebacks = totalWritebacks;
+        return record(hit, cache.getLastMissType(), writebacks);
+    }
+
+    // Counts an access with its miss type and the writebacks it caused, e.g. as recorded by an AccessHistory
+    public boolean record(boolean hit, String missType, int writebacks) {
+        accesses++;
+        if (hit)
+            windowHits++;
+        else
+            windowMisses[kindOf(missType)]++;
+        windowWritebacks += writebacks;
+        return accesses == window && close();
+    }
+
+    private static int kindOf(String missType) {
+        for (int kind = 0; kind < OTHER; kind++)
+            if (MISS_TYPES[kind].equals(missType))
+                return kind;
+        return OTHER;
+    }
+
+    private boolean close() {
+        double[] signature = new double[SIGNATURE];
+        signature[0] = (double) windowHits / window;
+        for (int kind = 0; kind < KINDS; kind++)
+            signature[kind + 1] = (double) windowMisses[kind] / window;
+        signature[KINDS + 1] = (double) windowWritebacks / window;
+
+        boolean newPhase = phaseCount == 0 || distanceToPhase(signature) > phaseThreshold;
+        if (newPhase)
+            startPhase();
+        for (int i = 0; i < SIGNATURE; i++)
+            phaseSignature[i] += signature[i];
+        phaseWindows++;
+        phaseHits[phaseCount - 1] += windowHits;
+        phaseWritebacks[phaseCount - 1] += windowWritebacks;
+
+        int slot = (int) (closedWindows % capacity);
+        hits[slot] = windowHits;
+        System.arraycopy(windowMisses, 0, misses, slot * KINDS, KINDS);
+        writebacks[slot] = windowWritebacks;
+        phases[slot] = phaseCount - 1;
+        closedWindows++;
+
+        accesses = 0;
+        windowHits = 0;
+        windowWritebacks = 0;
+        Arrays.fill(windowMisses, 0);
+        return newPhase && phaseCount > 1;
+    }
+
+    private double distanceToPhase(double[] signature) {
+        double distance = 0;
+        for (int i = 0; i < SIGNATURE; i++)
+            distance += Math.abs(signature[i] - phaseSignature[i] / phaseWindows);
+        return distance;
+    }
+
+    private void startPhase() {
+        if (phaseCount == phaseStarts.length) {
+            phaseStarts = Arrays.copyOf(phaseStarts, phaseCount * 2);
+            phaseHits = Arrays.copyOf(phaseHits, phaseCount * 2);
+            phaseWritebacks = Arrays.copyOf(phaseWritebacks, phaseCount * 2);
+        }
+        phaseStarts[phaseCount++] = closedWindows;
+        Arrays.fill(phaseSignature, 0);
+        phaseWindows = 0;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public long getClosedWindows() {
+        return closedWindows;
+    }
+
+    // Oldest window still in the ring buffer
+    public long getFirstRetainedWindow() {
+        return Math.max(0, closedWindows - capacity);
+    }
+
+    public double getHitRatio(long windowIndex) {
+        return (double) hits[slot(windowIndex)] / window;
+    }
+
+    public double getMissRatio(long windowIndex) {
+        return 1 - getHitRatio(windowIndex);
+    }
+
+    public int getWritebacks(long windowIndex) {
+        return writebacks[slot(windowIndex)];
+    }
+
+    public int getPhase(long windowIndex) {
+        return phases[slot(windowIndex)];
+    }
+
+    private int slot(long windowIndex) {
+        if (windowIndex < getFirstRetainedWindow() || windowIndex >= closedWindows)
+            throw new IllegalArgumentException("Window " + windowIndex + " is not retained (retained: "
+                    + getFirstRetainedWindow() + " to " + (closedWindows - 1) + ")");
+        return (int) (windowIndex % capacity);
+    }
+
+    public int getPhaseCount() {
+        return phaseCount;
+    }
+
+    // Windows in a phase, from its first window up to the next phase or the last closed window
+    private long phaseLength(int phase) {
+        return (phase + 1 < phaseCount ? phaseStarts[phase + 1] : closedWindows) - phaseStarts[phase];
+    }
+
+    public double getPhaseHitRatio(int phase) {
+        return (double) phaseHits[phase] / (phaseLength(phase) * window);
+    }
+
+    public String getPhaseSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%d windows of %d accesses, %d phases%n", closedWindows, window, phaseCount));
+        for (int p = 0; p < phaseCount; p++) {
+            long first = phaseStarts[p];
+            long accessesInPhase = phaseLength(p) * window;
+            summary.append(String.format("phase %d: accesses %d-%d hitRatio=%.4f writebacks=%d (%.4f per access)%n",
+                    p, first * window, first * window + accessesInPhase - 1, getPhaseHitRatio(p),
+                    phaseWritebacks[p], (double) phaseWritebacks[p] / accessesInPhase));
+        }
+        return summary.toString().stripTrailing();
+    }
+
+    // The retained windows as CSV, one row per window
+    public void writeCsv(Writer out) throws IOException {
+        out.write("window,first_access,hit_ratio,miss_ratio");
+        for (String type : MISS_TYPES)
+            out.write("," + type.toLowerCase() + "_misses");
+        out.write(",other_misses,writebacks,phase\n");
+        for (long w = getFirstRetainedWindow(); w < closedWindows; w++) {
+            int slot = slot(w);
+            StringBuilder row = new StringBuilder();
+            row.append(w).append(',').append(w * window).append(',')
+                    .append(String.format(Locale.ROOT, "%.6f,%.6f", getHitRatio(w), getMissRatio(w)));
+            for (int kind = 0; kind < KINDS; kind++)
+                row.append(',').append(misses[slot * KINDS + kind]);
+            row.append(',').append(writebacks[slot]).append(',').append(phases[slot]).append('\n');
+            out.write(row.toString());
+        }
+    }
+}
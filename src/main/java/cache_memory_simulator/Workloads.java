@@ -0,0 +1,454 @@
+package cache_memory_simulator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic address generators. Every generator is lazy: it keeps only its loop counters
+ * (and, for pointer chasing, the node permutation), never the accesses themselves.
+ * Randomised generators take a seed so a run can be reproduced exactly.
+ * All sizes are in memory words, the same unit the cache and {@link Memory} use.
+ */
+public final class Workloads {
+
+    private Workloads() {
+    }
+
+    public static AddressStream sequential(long base, long footprint, long count) {
+        return strided(base, footprint, 1, count);
+    }
+
+    // Walks the region with a fixed stride, wrapping around when it runs past the end
+    public static AddressStream strided(long base, long footprint, long stride, long count) {
+        requirePositive(footprint, "footprint");
+        requirePositive(stride, "stride");
+        return new CountedStream(count) {
+            private long offset = 0;
+
+            @Override
+            long produce() {
+                long address = base + offset;
+                offset = (offset + stride) % footprint;
+                return address;
+            }
+        };
+    }
+
+    public static AddressStream uniform(long base, long footprint, long count, long seed) {
+        requirePositive(footprint, "footprint");
+        SplittableRandom random = new SplittableRandom(seed);
+        return new CountedStream(count) {
+            @Override
+            long produce() {
+                return base + random.nextLong(footprint);
+            }
+        };
+    }
+
+    /*
+     * Zipf-distributed accesses over `items` granules of `granule` words each: item 0 is the
+     * hottest. Uses the rejection-free method of Gray et al. ("Quickly Generating Billion-Record
+     * Synthetic Databases"), so each sample is O(1) once zeta(n) has been computed.
+     */
+    public static AddressStream zipfian(long base, long items, long granule, double theta, long count, long seed) {
+        requirePositive(items, "items");
+        requirePositive(granule, "granule");
+        if (theta <= 0 || theta >= 1)
+            throw new IllegalArgumentException("Zipf theta must be in (0, 1), got " + theta);
+
+        double zetaN = 0;
+        for (long i = 1; i <= items; i++)
+            zetaN += 1.0 / Math.pow(i, theta);
+        double zeta2 = 1.0 + 1.0 / Math.pow(2, theta);
+        double alpha = 1.0 / (1.0 - theta);
+        double eta = (1.0 - Math.pow(2.0 / items, 1.0 - theta)) / (1.0 - zeta2 / zetaN);
+        double secondThreshold = 1.0 + Math.pow(0.5, theta);
+        double zetaTotal = zetaN;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        return new CountedStream(count) {
+            @Override
+            long produce() {
+                double u = random.nextDouble();
+                double uz = u * zetaTotal;
+                long item;
+                if (uz < 1.0)
+                    item = 0;
+                else if (uz < secondThreshold)
+                    item = 1;
+                else
+                    item = Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1.0, alpha)));
+                return base + item * granule;
+            }
+        };
+    }
+
+    // Follows a random single-cycle permutation of nodes, like walking a shuffled linked list
+    public static AddressStream pointerChase(long base, int nodes, long nodeSize, long count, long seed) {
+        requirePositive(nodes, "nodes");
+        requirePositive(nodeSize, "nodeSize");
+        int[] next = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+            next[i] = i;
+        // Sattolo's algorithm: a uniformly random permutation consisting of exactly one cycle
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = nodes - 1; i > 0; i--) {
+            int j = random.nextInt(i);
+            int tmp = next[i];
+            next[i] = next[j];
+            next[j] = tmp;
+        }
+        return new CountedStream(count) {
+            private int node = 0;
+
+            @Override
+            long produce() {
+                long address = base + node * nodeSize;
+                node = next[node];
+                return address;
+            }
+        };
+    }
+
+    /*
+     * Naive i-j-k matrix multiply C = A * B on n x n row-major matrices laid out back to back
+     * from `base`: for each C[i][j] it loads A[i][k] and B[k][j] for every k, then stores C[i][j].
+     */
+    public static AddressStream matrixMultiply(long base, int n, long elementSize) {
+        requirePositive(n, "n");
+        requirePositive(elementSize, "elementSize");
+        long matrix = (long) n * n * elementSize;
+        long a = base, b = base + matrix, c = base + 2 * matrix;
+        long total = 2L * n * n * n + (long) n * n;
+
+        return new CountedStream(total) {
+            private int i, j, k;
+            private int step; // 0 = load A, 1 = load B, 2 = store C
+            private boolean write;
+
+            @Override
+            long produce() {
+                long address;
+                switch (step) {
+                    case 0 -> {
+                        write = false;
+                        address = a + ((long) i * n + k) * elementSize;
+                        step = 1;
+                    }
+                    case 1 -> {
+                        address = b + ((long) k * n + j) * elementSize;
+                        if (++k == n) {
+                            k = 0;
+                            step = 2;
+                        } else step = 0;
+                    }
+                    default -> {
+                        write = true;
+                        address = c + ((long) i * n + j) * elementSize;
+                        step = 0;
+                        if (++j == n) {
+                            j = 0;
+                            i++;
+                        }
+                    }
+                }
+                return address;
+            }
+
+            @Override
+            public boolean isWrite() {
+                return write;
+            }
+        };
+    }
+
+    /*
+     * Tiled matrix multiply with square tiles of `tile` elements: loops over (ii, jj, kk) tiles and,
+     * inside a tile, loads C[i][j], accumulates A[i][k] * B[k][j] and stores C[i][j] back.
+     */
+    public static AddressStream blockedMatrixMultiply(long base, int n, int tile, long elementSize) {
+        requirePositive(n, "n");
+        requirePositive(tile, "tile");
+        requirePositive(elementSize, "elementSize");
+        long matrix = (long) n * n * elementSize;
+        long a = base, b = base + matrix, c = base + 2 * matrix;
+        long kTiles = (n + tile - 1) / tile;
+        long total = 2L * n * n * n + 2L * n * n * kTiles;
+
+        return new CountedStream(total) {
+            private int ii, jj, kk;
+            private int i, j, k;
+            private int step; // 0 = load C, 1 = load A, 2 = load B, 3 = store C
+            private boolean write;
+
+            @Override
+            long produce() {
+                long address;
+                switch (step) {
+                    case 0 -> {
+                        write = false;
+                        address = c + ((long) i * n + j) * elementSize;
+                        k = kk;
+                        step = 1;
+                    }
+                    case 1 -> {
+                        address = a + ((long) i * n + k) * elementSize;
+                        step = 2;
+                    }
+                    case 2 -> {
+                        address = b + ((long) k * n + j) * elementSize;
+                        step = ++k == Math.min(kk + tile, n) ? 3 : 1;
+                    }
+                    default -> {
+                        write = true;
+                        address = c + ((long) i * n + j) * elementSize;
+                        step = 0;
+                        advance();
+                    }
+                }
+                return address;
+            }
+
+            private void advance() {
+                if (++j < Math.min(jj + tile, n))
+                    return;
+                j = jj;
+                if (++i < Math.min(ii + tile, n))
+                    return;
+                kk += tile;
+                if (kk >= n) {
+                    kk = 0;
+                    jj += tile;
+                    if (jj >= n) {
+                        jj = 0;
+                        ii += tile;
+                    }
+                }
+                i = ii;
+                j = jj;
+            }
+
+            @Override
+            public boolean isWrite() {
+                return write;
+            }
+        };
+    }
+
+    /*
+     * 5-point Jacobi stencil on a rows x cols grid with two buffers: every interior point loads its
+     * four neighbours and itself from one buffer and stores the result into the other. The buffers
+     * swap roles after each iteration.
+     */
+    public static AddressStream stencil(long base, int rows, int cols, long elementSize, int iterations) {
+        if (rows < 3 || cols < 3)
+            throw new IllegalArgumentException("Stencil grid must be at least 3x3, got " + rows + "x" + cols);
+        requirePositive(elementSize, "elementSize");
+        requirePositive(iterations, "iterations");
+        long grid = (long) rows * cols * elementSize;
+        long total = 6L * (rows - 2) * (cols - 2) * iterations;
+
+        return new CountedStream(total) {
+            private int i = 1, j = 1;
+            private int step; // 0..4 = north, south, west, east, centre; 5 = store
+            private boolean swapped;
+            private boolean write;
+
+            @Override
+            long produce() {
+                long in = swapped ? base + grid : base;
+                long out = swapped ? base : base + grid;
+                int row = i, col = j;
+                switch (step) {
+                    case 0 -> row--;
+                    case 1 -> row++;
+                    case 2 -> col--;
+                    case 3 -> col++;
+                    default -> {
+                    }
+                }
+                write = step == 5;
+                long address = (write ? out : in) + ((long) row * cols + col) * elementSize;
+                if (++step == 6) {
+                    step = 0;
+                    if (++j == cols - 1) {
+                        j = 1;
+                        if (++i == rows - 1) {
+                            i = 1;
+                            swapped = !swapped;
+                        }
+                    }
+                }
+                return address;
+            }
+
+            @Override
+            public boolean isWrite() {
+                return write;
+            }
+        };
+    }
+
+    // Turns a fraction of the accesses of a load-only stream into stores
+    public static AddressStream withStores(AddressStream source, double storeFraction, long seed) {
+        if (storeFraction < 0 || storeFraction > 1)
+            throw new IllegalArgumentException("Store fraction must be in [0, 1], got " + storeFraction);
+        SplittableRandom random = new SplittableRandom(seed);
+        return new AddressStream() {
+            private boolean write;
+
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                long address = source.nextLong();
+                write = source.isWrite() || random.nextDouble() < storeFraction;
+                return address;
+            }
+
+            @Override
+            public boolean isWrite() {
+                return write;
+            }
+
+            @Override
+            public int tenant() {
+                return source.tenant();
+            }
+        };
+    }
+
+    // Round-robin mix of several streams; stream i is tenant i. Finished streams drop out of the rotation.
+    public static AddressStream interleave(AddressStream... tenants) {
+        if (tenants.length == 0)
+            throw new IllegalArgumentException("At least one tenant stream is required");
+        return new AddressStream() {
+            private int next = 0;
+            private int current = 0;
+
+            @Override
+            public boolean hasNext() {
+                for (AddressStream stream : tenants)
+                    if (stream.hasNext())
+                        return true;
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                for (int tried = 0; tried < tenants.length; tried++) {
+                    int candidate = next;
+                    next = (next + 1) % tenants.length;
+                    if (tenants[candidate].hasNext()) {
+                        current = candidate;
+                        return tenants[candidate].nextLong();
+                    }
+                }
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public boolean isWrite() {
+                return tenants[current].isWrite();
+            }
+
+            @Override
+            public int tenant() {
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Builds a generator from a textual spec of the form {@code name,key=value,...}, e.g.
+     * {@code zipf,items=4096,theta=0.99,count=1000000,seed=7} or {@code matmul,n=64}.
+     * Shared by the headless {@link TraceRunner} and the UI playback panel.
+     */
+    public static AddressStream fromSpec(String spec) {
+        String[] parts = spec.trim().split(",");
+        String name = parts[0].trim().toLowerCase();
+        Map<String, String> params = new HashMap<>();
+        for (int p = 1; p < parts.length; p++) {
+            String[] kv = parts[p].split("=", 2);
+            if (kv.length != 2)
+                throw new IllegalArgumentException("Expected key=value in workload spec, got '" + parts[p] + "'");
+            params.put(kv[0].trim().toLowerCase(), kv[1].trim());
+        }
+
+        long base = longParam(params, "base", 0);
+        long count = longParam(params, "count", 1000);
+        long seed = longParam(params, "seed", 42);
+        long footprint = longParam(params, "footprint", 256);
+        long elem = longParam(params, "elem", 1);
+
+        AddressStream stream = switch (name) {
+            case "seq", "sequential" -> sequential(base, footprint, count);
+            case "stride", "strided" -> strided(base, footprint, longParam(params, "stride", 4), count);
+            case "uniform", "random" -> uniform(base, footprint, count, seed);
+            case "zipf", "zipfian" -> zipfian(base, longParam(params, "items", 64), elem,
+                    doubleParam(params, "theta", 0.99), count, seed);
+            case "chase", "pointer" -> pointerChase(base, (int) longParam(params, "nodes", 64),
+                    longParam(params, "node", 4), count, seed);
+            case "matmul" -> matrixMultiply(base, (int) longParam(params, "n", 8), elem);
+            case "blocked", "tiled" -> blockedMatrixMultiply(base, (int) longParam(params, "n", 8),
+                    (int) longParam(params, "tile", 4), elem);
+            case "stencil" -> stencil(base, (int) longParam(params, "rows", 16),
+                    (int) longParam(params, "cols", 16), elem, (int) longParam(params, "iterations", 1));
+            default -> throw new IllegalArgumentException("Unknown workload '" + name + "'");
+        };
+
+        double stores = doubleParam(params, "writes", 0);
+        return stores > 0 ? withStores(stream, stores, seed ^ 0x5DEECE66DL) : stream;
+    }
+
+    // Hex values (0x...) are read as unsigned so high 64-bit base addresses can be given
+    private static long longParam(Map<String, String> params, String key, long defaultValue) {
+        String value = params.get(key);
+        if (value == null)
+            return defaultValue;
+        if (value.startsWith("0x") || value.startsWith("0X"))
+            return Long.parseUnsignedLong(value.substring(2), 16);
+        return Long.parseLong(value);
+    }
+
+    private static double doubleParam(Map<String, String> params, String key, double defaultValue) {
+        String value = params.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static void requirePositive(long value, String name) {
+        if (value <= 0)
+            throw new IllegalArgumentException(name + " must be positive, got " + value);
+    }
+
+    // Base for bounded generators: tracks how many accesses are left and delegates the address to produce()
+    private abstract static class CountedStream implements AddressStream {
+        private long remaining;
+
+        CountedStream(long count) {
+            if (count < 0)
+                throw new IllegalArgumentException("count must not be negative, got " + count);
+            this.remaining = count;
+        }
+
+        abstract long produce();
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            return produce();
+        }
+    }
+}
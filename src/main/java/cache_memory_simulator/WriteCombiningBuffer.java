@@ -0,0 +1,118 @@
+package cache_memory_simulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A small buffer that merges stores to the same block before they reach memory, the way CPUs
+ * handle streaming (non-temporal) stores. Each entry holds one block and a mask of the words
+ * written so far. An entry goes to memory as a single burst when every word of its block has
+ * been written, when it is the oldest entry and room is needed, or when the cache needs to read
+ * the block.
+ */
+final class WriteCombiningBuffer {
+    private final Memory memory;
+    private final CacheGeometry geometry;
+    private final long fullMask;
+
+    // Entries are kept in arrival order: index 0 is the oldest
+    private final long[] blocks;
+    private final long[] masks;
+    private final String[][] words;
+    private int size;
+
+    private long combinedStores; // stores merged into an entry that already existed
+
+    WriteCombiningBuffer(Memory memory, CacheGeometry geometry, int entries) {
+        this.memory = memory;
+        this.geometry = geometry;
+        int blockSize = geometry.getBlockSize();
+        this.fullMask = blockSize == 64 ? -1L : (1L << blockSize) - 1;
+        this.blocks = new long[entries];
+        this.masks = new long[entries];
+        this.words = new String[entries][blockSize];
+    }
+
+    void store(long address, String data) {
+        long block = geometry.blockNumber(address);
+        int offset = geometry.offset(address);
+        int entry = find(block);
+        if (entry >= 0) {
+            combinedStores++;
+        } else {
+            if (size == blocks.length)
+                flushEntry(0);
+            entry = size++;
+            blocks[entry] = block;
+            masks[entry] = 0;
+        }
+        words[entry][offset] = data;
+        masks[entry] |= 1L << offset;
+        if (masks[entry] == fullMask)
+            flushEntry(entry);
+    }
+
+    // Writes out a pending entry for the block, so a fill from memory sees the latest data
+    void flush(long block) {
+        int entry = find(block);
+        if (entry >= 0)
+            flushEntry(entry);
+    }
+
+    void drain() {
+        while (size > 0)
+            flushEntry(0);
+    }
+
+    long getCombinedStores() {
+        return combinedStores;
+    }
+
+    private int find(long block) {
+        for (int i = 0; i < size; i++)
+            if (blocks[i] == block)
+                return i;
+        return -1;
+    }
+
+    private void flushEntry(int entry) {
+        memory.writeBlock(geometry.baseAddress(blocks[entry]), words[entry], masks[entry]);
+        // Close the gap, recycling the freed word array at the end
+        String[] freed = words[entry];
+        for (int i = entry; i < size - 1; i++) {
+            blocks[i] = blocks[i + 1];
+            masks[i] = masks[i + 1];
+            words[i] = words[i + 1];
+        }
+        size--;
+        words[size] = freed;
+    }
+
+    void saveState(DataOutputStream out) throws IOException {
+        Checkpoint.writeVarLong(out, size);
+        for (int i = 0; i < size; i++) {
+            Checkpoint.writeVarLong(out, blocks[i]);
+            Checkpoint.writeVarLong(out, masks[i]);
+            for (int w = 0; w < words[i].length; w++)
+                if (((masks[i] >>> w) & 1) != 0)
+                    out.writeUTF(words[i][w]);
+        }
+        Checkpoint.writeVarLong(out, combinedStores);
+    }
+
+    void restoreState(DataInputStream in) throws IOException {
+        int entries = (int) Checkpoint.readVarLong(in);
+        if (entries > blocks.length)
+            throw new IOException("Checkpoint has " + entries + " write-combining entries but the buffer holds " + blocks.length);
+        size = entries;
+        for (int i = 0; i < size; i++) {
+            blocks[i] = Checkpoint.readVarLong(in);
+            masks[i] = Checkpoint.readVarLong(in);
+            for (int w = 0; w < words[i].length; w++)
+                if (((masks[i] >>> w) & 1) != 0)
+                    words[i][w] = in.readUTF();
+        }
+        combinedStores = Checkpoint.readVarLong(in);
+    }
+}
@@ -0,0 +1,99 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessHistoryTest {
+    private static final int MEMORY_SIZE = 512;
+    private static final int INTERVAL = 50;
+    private static final int ACCESSES = 400;
+
+    private static List<Function<Memory, AbstractCache>> engines() {
+        return List.of(
+                m -> new DirectMappedCache(16, 4, m, WritePolicy.WRITE_BACK, AllocationPolicy.WRITE_ALLOCATE, 0, 2),
+                m -> new DirectMappedCache(16, 4, m, WritePolicy.WRITE_THROUGH, AllocationPolicy.NO_WRITE_ALLOCATE, 3, 4),
+                m -> new SetAssociativeCache(16, 4, 4, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK,
+                        AllocationPolicy.WRITE_VALIDATE, 0, 2),
+                m -> new SetAssociativeCache(16, 4, 4, m, ReplacementPolicy.FIFO, WritePolicy.WRITE_THROUGH,
+                        AllocationPolicy.NO_WRITE_ALLOCATE, 2, 2),
+                m -> new SetAssociativeCache(16, 4, 4, m, ReplacementPolicy.RANDOM, WritePolicy.WRITE_BACK),
+                m -> new FullyAssociativeCache(16, 4, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK),
+                m -> new FullyAssociativeCache(16, 4, m, ReplacementPolicy.RANDOM, WritePolicy.WRITE_THROUGH));
+    }
+
+    // Records random accesses through the history; element k is the state after k accesses
+    private static List<byte[]> record(AccessHistory history, AbstractCache cache, Memory memory, Random random) {
+        List<byte[]> states = new ArrayList<>();
+        states.add(Checkpoint.toBytes(cache, memory));
+        for (int i = 0; i < ACCESSES; i++) {
+            long address = random.nextInt(MEMORY_SIZE);
+            if (random.nextBoolean())
+                history.write(address, "v" + i);
+            else
+                history.read(address);
+            states.add(Checkpoint.toBytes(cache, memory));
+        }
+        return states;
+    }
+
+    @Test
+    void undoAndJumpsMatchTheStateRecordedAtEachPosition() {
+        int seed = 0;
+        for (Function<Memory, AbstractCache> engine : engines()) {
+            Memory memory = new Memory(MEMORY_SIZE);
+            AbstractCache cache = engine.apply(memory);
+            AccessHistory history = new AccessHistory(cache, memory, INTERVAL);
+            Random random = new Random(seed++);
+            List<byte[]> states = record(history, cache, memory, random);
+            String name = cache.getClass().getSimpleName();
+
+            // Step back one access at a time, which only rolls back the undo log within an interval
+            for (int position = ACCESSES; position > ACCESSES - 2 * INTERVAL; position--) {
+                history.stepBack();
+                assertArrayEquals(states.get(position - 1), Checkpoint.toBytes(cache, memory), name + " back to " + (position - 1));
+            }
+            // Random jumps both ways, across snapshots, mixed with single steps
+            for (int i = 0; i < 300; i++) {
+                int target = random.nextInt(ACCESSES + 1);
+                if (random.nextInt(3) == 0) {
+                    while (history.getPosition() > target)
+                        history.stepBack();
+                } else {
+                    history.jumpTo(target);
+                }
+                assertArrayEquals(states.get(history.getPosition()), Checkpoint.toBytes(cache, memory),
+                        name + " at " + history.getPosition());
+            }
+        }
+    }
+
+    @Test
+    void newAccessAfterSteppingBackReplacesTheFuture() {
+        Memory memory = new Memory(MEMORY_SIZE);
+        AbstractCache cache = new SetAssociativeCache(16, 4, 4, memory, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK);
+        AccessHistory history = new AccessHistory(cache, memory, INTERVAL);
+        List<byte[]> states = record(history, cache, memory, new Random(7));
+
+        history.jumpTo(120);
+        assertTrue(history.canStepForward());
+        history.write(3, "new");
+        assertEquals(121, history.getPosition());
+        assertEquals(121, history.getLength());
+        assertFalse(history.canStepForward());
+        byte[] branched = Checkpoint.toBytes(cache, memory);
+
+        history.jumpTo(0);
+        assertArrayEquals(states.get(0), Checkpoint.toBytes(cache, memory));
+        history.jumpTo(ACCESSES);
+        assertEquals(121, history.getPosition());
+        assertArrayEquals(branched, Checkpoint.toBytes(cache, memory));
+        history.stepBack();
+        assertArrayEquals(states.get(120), Checkpoint.toBytes(cache, memory));
+    }
+}
@@ -0,0 +1,114 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationPolicyTest {
+    private static final int MEMORY_SIZE = 1 << 12;
+    private static final int BLOCK_SIZE = 4;
+
+    private static AbstractCache create(String engine, Memory memory, ReplacementPolicy replacement, WritePolicy write,
+                                        AllocationPolicy allocation, int writeCombining, int sectorSize) {
+        return switch (engine) {
+            case "direct" -> new DirectMappedCache(8, BLOCK_SIZE, memory, write, allocation, writeCombining, sectorSize);
+            case "set" -> new SetAssociativeCache(8, BLOCK_SIZE, 2, memory, replacement, write, allocation, writeCombining, sectorSize);
+            default -> new FullyAssociativeCache(8, BLOCK_SIZE, memory, replacement, write, allocation, writeCombining, sectorSize);
+        };
+    }
+
+    private static String[] contents(Memory memory) {
+        String[] words = new String[memory.getSize()];
+        for (int i = 0; i < words.length; i++)
+            words[i] = memory.getMemoryCells().get(i).getData();
+        return words;
+    }
+
+    // Word the last read of the address left in the cache
+    private static String lastRead(AbstractCache cache, long address) {
+        return cache.getLines()[cache.lastLineIndex].getData()[cache.getGeometry().offset(address)];
+    }
+
+    private static void assertReadsLatestWrites(String engine, ReplacementPolicy replacement, WritePolicy write,
+                                                AllocationPolicy allocation, int writeCombining, int sectorSize) {
+        String config = engine + " " + replacement + " " + write + " " + allocation
+                + " combining=" + writeCombining + " sector=" + sectorSize;
+        Memory memory = new Memory(MEMORY_SIZE);
+        String[] initial = contents(memory);
+        AbstractCache cache = create(engine, memory, replacement, write, allocation, writeCombining, sectorSize);
+
+        // A footprint well beyond the 32-word cache, so lines (dirty or partial) are evicted and refilled often
+        Map<Long, String> latest = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 4000; i++) {
+            long address = random.nextInt(256);
+            if (random.nextInt(10) < 6) {
+                String value = "v" + i;
+                cache.write(address, value);
+                latest.put(address, value);
+            } else {
+                cache.read(address);
+                assertEquals(latest.getOrDefault(address, initial[(int) address]), lastRead(cache, address),
+                        config + ", access " + i + " to " + address);
+            }
+        }
+        for (long address = 0; address < 256; address++) {
+            cache.read(address);
+            assertEquals(latest.getOrDefault(address, initial[(int) address]), lastRead(cache, address),
+                    config + ", final read of " + address);
+        }
+
+        // Write-through leaves nothing behind in the cache once the combining buffer is drained
+        if (write == WritePolicy.WRITE_THROUGH) {
+            cache.drainWriteBuffer();
+            String[] words = contents(memory);
+            for (Map.Entry<Long, String> entry : latest.entrySet())
+                assertEquals(entry.getValue(), words[(int) (long) entry.getKey()], config + ", memory at " + entry.getKey());
+        }
+    }
+
+    @Test
+    void everyCombinationReadsBackTheLatestWrite() {
+        for (String engine : new String[]{"direct", "set", "fully"})
+            for (ReplacementPolicy replacement : ReplacementPolicy.values())
+                for (WritePolicy write : WritePolicy.values())
+                    for (AllocationPolicy allocation : AllocationPolicy.values())
+                        for (int writeCombining : new int[]{0, 4})
+                            for (int sectorSize : new int[]{BLOCK_SIZE, 1, 2})
+                                assertReadsLatestWrites(engine, replacement, write, allocation, writeCombining, sectorSize);
+    }
+
+    @Test
+    void noWriteAllocateLeavesTheCacheUntouched() {
+        Memory memory = new Memory(64);
+        DirectMappedCache cache = new DirectMappedCache(4, BLOCK_SIZE, memory, WritePolicy.WRITE_BACK,
+                AllocationPolicy.NO_WRITE_ALLOCATE, 0, BLOCK_SIZE);
+        assertFalse(cache.write(5, "x"));
+        for (CacheLine line : cache.getLines())
+            assertFalse(line.isValid());
+        assertEquals("x", memory.getMemoryCells().get(5).getData());
+        assertFalse(cache.read(5));
+        assertTrue(cache.write(5, "y"));
+    }
+
+    @Test
+    void writeValidateFetchesNothingUntilAMissingWordIsRead() {
+        Memory memory = new Memory(64);
+        DirectMappedCache cache = new DirectMappedCache(4, BLOCK_SIZE, memory, WritePolicy.WRITE_BACK,
+                AllocationPolicy.WRITE_VALIDATE, 0, BLOCK_SIZE);
+        cache.write(8, "a");
+        assertEquals(0, memory.getWordsRead());
+        assertTrue(cache.write(9, "b"));
+        assertTrue(cache.read(8));
+        assertFalse(cache.read(10));
+        assertEquals("Partial", cache.getLastMissType());
+        // Only the two words that were never written are fetched, and the written ones survive
+        assertEquals(2, memory.getWordsRead());
+        assertEquals("a", cache.getLines()[cache.lastLineIndex].getData()[0]);
+        assertEquals("b", cache.getLines()[cache.lastLineIndex].getData()[1]);
+    }
+}
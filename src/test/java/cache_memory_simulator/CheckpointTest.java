@@ -0,0 +1,90 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+    private static final String WORKLOAD = "zipf,items=3000,count=40000,writes=0.3";
+
+    @TempDir
+    Path dir;
+
+    private static List<Function<Memory, CacheMemory>> engines() {
+        return List.of(
+                m -> new DirectMappedCache(32, 4, m, WritePolicy.WRITE_BACK),
+                m -> new SetAssociativeCache(32, 4, 4, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK),
+                m -> new SetAssociativeCache(32, 4, 4, m, ReplacementPolicy.FIFO, WritePolicy.WRITE_THROUGH),
+                m -> new SetAssociativeCache(32, 4, 4, m, ReplacementPolicy.RANDOM, WritePolicy.WRITE_BACK),
+                m -> new FullyAssociativeCache(32, 4, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK),
+                m -> new SetAssociativeCache(32, 8, 2, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK,
+                        AllocationPolicy.WRITE_VALIDATE, 4, 2),
+                m -> new ConcurrentSetAssociativeCache(32, 4, 4, m, ReplacementPolicy.RANDOM, WritePolicy.WRITE_BACK),
+                m -> new ConcurrentSetAssociativeCache(32, 4, 4, m, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK));
+    }
+
+    @Test
+    void restoredStateSavesIdentically() {
+        for (Function<Memory, CacheMemory> engine : engines()) {
+            Memory memory = new Memory(4096);
+            CacheMemory cache = engine.apply(memory);
+            TraceRunner.run(cache, Workloads.fromSpec(WORKLOAD), 25000);
+            byte[] saved = Checkpoint.toBytes(cache, memory);
+
+            Memory restoredMemory = new Memory(4096);
+            CacheMemory restored = engine.apply(restoredMemory);
+            Checkpoint.fromBytes(saved, restored, restoredMemory);
+            assertArrayEquals(saved, Checkpoint.toBytes(restored, restoredMemory), cache.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void splitRunMatchesUninterruptedRun() throws IOException {
+        for (Function<Memory, CacheMemory> engine : engines()) {
+            Memory memory = new Memory(4096);
+            CacheMemory full = engine.apply(memory);
+            // Memory starts with random contents, so both runs start from the same snapshot
+            byte[] initial = Checkpoint.toBytes(full, memory);
+            TraceRunner.run(full, Workloads.fromSpec(WORKLOAD));
+
+            Memory firstMemory = new Memory(4096);
+            CacheMemory first = engine.apply(firstMemory);
+            Checkpoint.fromBytes(initial, first, firstMemory);
+            AddressStream stream = Workloads.fromSpec(WORKLOAD);
+            TraceRunner.run(first, stream, 17000);
+            Path file = dir.resolve("warm.ckpt");
+            Checkpoint.save(file, first, firstMemory);
+
+            Memory secondMemory = new Memory(4096);
+            CacheMemory second = engine.apply(secondMemory);
+            Checkpoint.restore(file, second, secondMemory);
+            TraceRunner.run(second, stream);
+
+            String name = full.getClass().getSimpleName();
+            assertEquals(full.getHits(), second.getHits(), name);
+            assertEquals(full.getMisses(), second.getMisses(), name);
+            assertArrayEquals(Checkpoint.toBytes(full, memory), Checkpoint.toBytes(second, secondMemory), name);
+        }
+    }
+
+    @Test
+    void rejectsMismatchedTargets() {
+        Memory memory = new Memory(1024);
+        byte[] saved = Checkpoint.toBytes(new SetAssociativeCache(16, 4, 4, memory, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK), memory);
+
+        Memory other = new Memory(1024);
+        assertThrows(UncheckedIOException.class, () -> Checkpoint.fromBytes(saved,
+                new FullyAssociativeCache(16, 4, other, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK), other));
+        assertThrows(UncheckedIOException.class, () -> Checkpoint.fromBytes(saved,
+                new SetAssociativeCache(16, 4, 2, other, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK), other));
+        assertThrows(UncheckedIOException.class, () -> Checkpoint.fromBytes(new byte[]{1, 2, 3},
+                new SetAssociativeCache(16, 4, 4, other, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK), other));
+    }
+}
@@ -0,0 +1,119 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentSetAssociativeCacheTest {
+    private static final int THREADS = 8;
+
+    // Replays recorded accesses; a negative entry is a store to ~address
+    private static AddressStream recorded(List<Long> accesses) {
+        return new AddressStream() {
+            private int next = 0;
+            private boolean write;
+
+            @Override
+            public boolean hasNext() {
+                return next < accesses.size();
+            }
+
+            @Override
+            public long nextLong() {
+                long access = accesses.get(next++);
+                write = access < 0;
+                return write ? ~access : access;
+            }
+
+            @Override
+            public boolean isWrite() {
+                return write;
+            }
+        };
+    }
+
+    private static List<Long> record(String spec) {
+        List<Long> accesses = new ArrayList<>();
+        AddressStream stream = Workloads.fromSpec(spec);
+        while (stream.hasNext()) {
+            long address = stream.nextLong();
+            accesses.add(stream.isWrite() ? ~address : address);
+        }
+        return accesses;
+    }
+
+    @Test
+    void parallelReplayCountsEveryAccess() {
+        for (ReplacementPolicy policy : ReplacementPolicy.values()) {
+            ConcurrentSetAssociativeCache cache = new ConcurrentSetAssociativeCache(64, 4, 4, new Memory(4096), policy,
+                    WritePolicy.WRITE_BACK);
+            List<AddressStream> streams = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+                streams.add(Workloads.fromSpec("zipf,items=2000,count=20000,writes=0.3,seed=" + i));
+            TraceRunner.Result result = TraceRunner.runParallel(cache, streams, Long.MAX_VALUE);
+
+            assertEquals(THREADS * 20000L, result.accesses(), policy.toString());
+            assertEquals(result.accesses(), cache.getHits() + cache.getMisses(), policy.toString());
+            assertEquals(result.hits(), cache.getHits(), policy.toString());
+            // No block was filled twice into the same set by racing threads
+            Set<Long> blocks = new HashSet<>();
+            CacheLine[] lines = cache.getLines();
+            for (int i = 0; i < lines.length; i++)
+                if (lines[i].isValid())
+                    assertTrue(blocks.add(cache.getGeometry().blockNumber(lines[i].getTag(), i / 4)), policy + " line " + i);
+        }
+    }
+
+    @Test
+    void randomVictimsDependOnlyOnEachSetsAccesses() {
+        List<Long> accesses = record("uniform,footprint=3000,count=60000,writes=0.3,seed=9");
+        ConcurrentSetAssociativeCache serial = new ConcurrentSetAssociativeCache(64, 4, 4, new Memory(4096),
+                ReplacementPolicy.RANDOM, WritePolicy.WRITE_BACK);
+        TraceRunner.run(serial, recorded(accesses));
+
+        // Each thread replays the accesses of its own sets, in their original order
+        ConcurrentSetAssociativeCache parallel = new ConcurrentSetAssociativeCache(64, 4, 4, new Memory(4096),
+                ReplacementPolicy.RANDOM, WritePolicy.WRITE_BACK);
+        CacheGeometry geometry = parallel.getGeometry();
+        List<List<Long>> perThread = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++)
+            perThread.add(new ArrayList<>());
+        for (long access : accesses) {
+            long address = access < 0 ? ~access : access;
+            perThread.get(geometry.setIndex(geometry.blockNumber(address)) % THREADS).add(access);
+        }
+        List<AddressStream> streams = new ArrayList<>();
+        for (List<Long> threadAccesses : perThread)
+            streams.add(recorded(threadAccesses));
+        TraceRunner.runParallel(parallel, streams, Long.MAX_VALUE);
+
+        assertEquals(serial.getHits(), parallel.getHits());
+        assertEquals(serial.getWritebacks(), parallel.getWritebacks());
+        for (int i = 0; i < serial.getLines().length; i++) {
+            assertEquals(serial.getLines()[i].getTag(), parallel.getLines()[i].getTag(), "line " + i);
+            assertEquals(serial.getLines()[i].isDirty(), parallel.getLines()[i].isDirty(), "line " + i);
+        }
+    }
+
+    @Test
+    void threadsRejectUnsupportedOptions() {
+        for (Map<String, String> options : List.of(
+                Map.of("mapping", "direct"), Map.of("mapping", "fully"), Map.of("sector", "2"),
+                Map.of("allocation", "WRITE_VALIDATE"), Map.of("window", "100"), Map.of("page", "4k"))) {
+            Map<String, String> withThreads = new HashMap<>(options);
+            withThreads.put("threads", "4");
+            withThreads.put("workload", "seq");
+            assertThrows(IllegalArgumentException.class, () -> TraceRunner.buildCache(withThreads, new Memory(64)),
+                    options.toString());
+        }
+        assertInstanceOf(ConcurrentSetAssociativeCache.class,
+                TraceRunner.buildCache(Map.of("threads", "4", "workload", "seq", "mapping", "set"), new Memory(64)));
+    }
+}
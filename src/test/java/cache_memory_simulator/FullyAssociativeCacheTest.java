@@ -0,0 +1,49 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullyAssociativeCacheTest {
+
+    private static void assertSameBehaviour(int lines, int blockSize, ReplacementPolicy policy, String workload) {
+        Memory faMemory = new Memory(1 << 16), saMemory = new Memory(1 << 16);
+        FullyAssociativeCache fa = new FullyAssociativeCache(lines, blockSize, faMemory, policy, WritePolicy.WRITE_BACK);
+        SetAssociativeCache sa = new SetAssociativeCache(lines, blockSize, lines, saMemory, policy, WritePolicy.WRITE_BACK);
+        AddressStream a = Workloads.fromSpec(workload), b = Workloads.fromSpec(workload);
+        while (a.hasNext()) {
+            long address = a.nextLong();
+            boolean faHit = a.isWrite() ? fa.write(address, "*") : fa.read(address);
+            assertEquals(address, b.nextLong());
+            boolean saHit = b.isWrite() ? sa.write(address, "*") : sa.read(address);
+            assertEquals(saHit, faHit, policy + " at address " + address);
+        }
+        assertEquals(sa.getHits(), fa.getHits());
+        assertEquals(saMemory.getTrafficSummary(), faMemory.getTrafficSummary());
+    }
+
+    @Test
+    void matchesSetAssociativeWithOneSet() {
+        for (ReplacementPolicy policy : ReplacementPolicy.values())
+            assertSameBehaviour(16, 4, policy, "zipf,items=200,count=20000,writes=0.25");
+    }
+
+    @Test
+    void matchesSetAssociativeWithManyLines() {
+        // Many lines and a footprint far larger than the cache, so the tag index sees heavy churn
+        for (ReplacementPolicy policy : ReplacementPolicy.values())
+            assertSameBehaviour(1024, 2, policy, "uniform,footprint=4000,count=30000,writes=0.25");
+    }
+
+    @Test
+    void conflictFreeMissesAreCapacityMisses() {
+        FullyAssociativeCache fa = new FullyAssociativeCache(4, 1, new Memory(64), ReplacementPolicy.LRU, WritePolicy.WRITE_BACK);
+        for (long address = 0; address < 5; address++)
+            fa.read(address);
+        assertEquals("Compulsory", fa.getLastMissType());
+        fa.read(0);
+        assertEquals("Capacity", fa.getLastMissType());
+        fa.read(4);
+        assertEquals("Hit", fa.getLastMissType());
+    }
+}
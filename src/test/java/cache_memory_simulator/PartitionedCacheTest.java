@@ -0,0 +1,96 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedCacheTest {
+
+    // One set of the given number of ways with one-word blocks, so line index = way
+    private static PartitionedCache oneSet(int ways, long[] masks, long epoch) {
+        return new PartitionedCache(ways, 1, ways, new Memory(64), ReplacementPolicy.LRU, WritePolicy.WRITE_BACK, masks, epoch);
+    }
+
+    @Test
+    void allocationStaysInsideTheTenantsWays() {
+        PartitionedCache cache = oneSet(4, new long[]{0b0011, 0b1100}, 0);
+        cache.read(1, 100);
+        cache.read(1, 101);
+        for (long block = 0; block < 20; block++) {
+            cache.read(0, block);
+            assertTrue(cache.lastLineIndex == 0 || cache.lastLineIndex == 1, "tenant 0 filled way " + cache.lastLineIndex);
+        }
+        // Tenant 0 thrashing its two ways left tenant 1's blocks alone
+        assertTrue(cache.read(1, 100));
+        assertTrue(cache.read(1, 101));
+    }
+
+    @Test
+    void hitsAreAllowedInAnyWay() {
+        PartitionedCache cache = oneSet(4, new long[]{0b0011, 0b1100}, 0);
+        cache.read(1, 7);
+        int way = cache.lastLineIndex;
+        assertTrue(way >= 2);
+        assertTrue(cache.read(0, 7));
+        assertEquals(way, cache.lastLineIndex);
+        assertEquals(1, cache.getHits(0));
+    }
+
+    @Test
+    void interferenceMissesHitInTheTenantsShadowTags() {
+        PartitionedCache cache = oneSet(4, PartitionedCache.sharedMasks(2, 4), 0);
+        cache.read(0, 1);
+        cache.read(0, 2);
+        // Four blocks of tenant 1 push tenant 0's two out of the shared set
+        for (long block = 10; block < 14; block++)
+            cache.read(1, block);
+        assertFalse(cache.read(0, 1));
+        // Alone, tenant 0 would still hold block 1: the miss is caused by sharing
+        assertEquals(1, cache.getInterferenceMisses(0));
+        // Tenant 1's misses were all compulsory, alone or not
+        assertEquals(0, cache.getInterferenceMisses(1));
+        assertFalse(cache.read(0, 50));
+        assertEquals(1, cache.getInterferenceMisses(0));
+    }
+
+    @Test
+    void repartitioningFavoursTheTenantWithMoreUtility() {
+        PartitionedCache cache = oneSet(8, PartitionedCache.equalMasks(2, 8), 400);
+        assertEquals(4, Long.bitCount(cache.getWayMask(0)));
+        // Tenant 0 reuses six blocks, so it gains from six ways; tenant 1 streams and gains from none
+        for (int i = 0; i < 200; i++) {
+            cache.read(0, i % 6);
+            cache.read(1, 1000 + i);
+        }
+        assertEquals(1, cache.getRepartitions());
+        assertEquals(7, Long.bitCount(cache.getWayMask(0)));
+        assertEquals(1, Long.bitCount(cache.getWayMask(1)));
+        assertEquals(0, cache.getWayMask(0) & cache.getWayMask(1));
+
+        // With seven ways tenant 0's six blocks now stay cached
+        long hits = cache.getHits(0);
+        for (int i = 0; i < 60; i++) {
+            cache.read(0, i % 6);
+            cache.read(1, 2000 + i);
+        }
+        assertTrue(cache.getHits(0) - hits >= 54, "hits after repartitioning: " + (cache.getHits(0) - hits));
+    }
+
+    @Test
+    void pageWalksAreBilledToTheTenantThatMissedTheTlb() {
+        // Tenant 0 touches a new page every access; tenant 1 stays within one page and walks once
+        Map<String, String> options = Map.of(
+                "tenants", "stride,stride=4096,footprint=4096000,count=1000;seq,base=0x10000000,footprint=64,count=1000",
+                "page", "4k", "partition", "none", "lines", "256", "k", "8");
+        Memory memory = new Memory(1024);
+        PartitionedCache cache = (PartitionedCache) TraceRunner.buildCache(options, memory);
+        VirtualMemory vm = TraceRunner.buildVirtualMemory(options, cache);
+        TraceRunner.run(cache, vm.translate(TraceRunner.tenantStream(options.get("tenants"))));
+
+        assertEquals(1001, vm.getWalks());
+        assertEquals(1000 + vm.getLevels(), cache.getAccesses(1));
+        assertEquals(1000 + vm.getPteReads() - vm.getLevels(), cache.getAccesses(0));
+    }
+}
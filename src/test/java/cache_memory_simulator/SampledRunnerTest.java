@@ -0,0 +1,65 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampledRunnerTest {
+
+    private static SetAssociativeCache cache() {
+        return new SetAssociativeCache(64, 4, 4, new Memory(4096), ReplacementPolicy.LRU, WritePolicy.WRITE_BACK);
+    }
+
+    @Test
+    void studentQuantileForFewUnits() {
+        assertEquals(12.706, SampledRunner.t95(1), 1e-3);
+        assertEquals(3.182, SampledRunner.t95(3), 1e-3);
+        assertEquals(2.042, SampledRunner.t95(30), 1e-3);
+        assertEquals(2.0395, SampledRunner.t95(31), 1e-3);
+        assertEquals(1.984, SampledRunner.t95(100), 1e-3);
+    }
+
+    @Test
+    void samplingEverySetIsExact() {
+        TraceRunner.Result full = TraceRunner.run(cache(), Workloads.fromSpec("zipf,items=500,count=20000,writes=0.2"));
+        SetAssociativeCache sampled = cache();
+        SampledRunner.Estimate estimate = SampledRunner.run(sampled, Workloads.fromSpec("zipf,items=500,count=20000,writes=0.2"),
+                new SampledRunner.Plan(sampled.getGeometry(), 1, 0, 0, 1), Long.MAX_VALUE);
+        assertEquals(full.hitRatio(), estimate.hitRatio(), 1e-12);
+        assertEquals(0, estimate.halfWidth());
+    }
+
+    @Test
+    void warmedIntervalsEstimateFullHitRatio() {
+        String spec = "zipf,items=2000,count=200000,writes=0.2";
+        TraceRunner.Result full = TraceRunner.run(cache(), Workloads.fromSpec(spec));
+        SetAssociativeCache sampled = cache();
+        SampledRunner.Estimate estimate = SampledRunner.run(sampled, Workloads.fromSpec(spec),
+                new SampledRunner.Plan(sampled.getGeometry(), 1, 2000, 200, 1), Long.MAX_VALUE);
+        assertEquals(100, estimate.units());
+        assertEquals(180000, estimate.warmedAccesses());
+        assertEquals(20000, sampled.getHits() + sampled.getMisses(), "warming must not count accesses");
+        assertTrue(Math.abs(estimate.hitRatio() - full.hitRatio()) <= estimate.halfWidth(),
+                estimate + " vs " + full.hitRatio());
+    }
+
+    @Test
+    void warmingLeavesSameTagsAsAccessing() {
+        SetAssociativeCache accessed = cache(), warmed = cache();
+        AddressStream a = Workloads.fromSpec("uniform,footprint=2000,count=5000,writes=0.3");
+        AddressStream b = Workloads.fromSpec("uniform,footprint=2000,count=5000,writes=0.3");
+        while (a.hasNext()) {
+            long address = a.nextLong();
+            if (a.isWrite()) accessed.write(address, "*");
+            else accessed.read(address);
+            warmed.warm(b.nextLong(), b.isWrite());
+        }
+        for (int i = 0; i < accessed.getLines().length; i++) {
+            CacheLine x = accessed.getLines()[i], y = warmed.getLines()[i];
+            assertEquals(x.isValid(), y.isValid());
+            assertEquals(x.getTag(), y.getTag());
+            assertEquals(x.isDirty(), y.isDirty());
+        }
+        assertEquals(0, warmed.getHits() + warmed.getMisses());
+    }
+}
@@ -0,0 +1,93 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectorTest {
+    private static final int BLOCK_SIZE = 8;
+
+    // 2 sets of 2 ways, 8-word lines in sectors of the given size
+    private static SetAssociativeCache cache(Memory memory, WritePolicy writePolicy, int sectorSize) {
+        return new SetAssociativeCache(4, BLOCK_SIZE, 2, memory, ReplacementPolicy.LRU, writePolicy,
+                AllocationPolicy.WRITE_ALLOCATE, 0, sectorSize);
+    }
+
+    private static CacheLine lastLine(AbstractCache cache) {
+        return cache.getLines()[cache.lastLineIndex];
+    }
+
+    @Test
+    void missFetchesOnlyItsSector() {
+        Memory memory = new Memory(256);
+        SetAssociativeCache cache = cache(memory, WritePolicy.WRITE_BACK, 2);
+        assertFalse(cache.read(13));
+        assertEquals("Compulsory", cache.getLastMissType());
+        assertEquals(2, memory.getWordsRead());
+        assertEquals(1, memory.getReadBursts());
+        // Words 12 and 13 of block 8..15: the sector holding offset 5
+        assertEquals(0b0011_0000L, lastLine(cache).getValidWords());
+        assertEquals(memory.getMemoryCells().get(12).getData(), lastLine(cache).getData()[4]);
+        assertEquals(BLOCK_SIZE - 2, cache.getWordsSaved());
+        assertTrue(cache.read(12));
+    }
+
+    @Test
+    void invalidSectorOfValidLineIsASectorMiss() {
+        Memory memory = new Memory(256);
+        SetAssociativeCache cache = cache(memory, WritePolicy.WRITE_BACK, 2);
+        cache.read(13);
+        assertFalse(cache.read(8));
+        assertEquals("Sector", cache.getLastMissType());
+        assertEquals(0b0011_0011L, lastLine(cache).getValidWords());
+        assertEquals(4, memory.getWordsRead());
+        assertEquals(2, cache.getMisses());
+
+        // A store to a missing sector fetches it before writing, so the line never holds a half-filled sector
+        assertFalse(cache.write(11, "x"));
+        assertEquals("Sector", cache.getLastMissType());
+        assertEquals(0b0011_1111L, lastLine(cache).getValidWords());
+        assertEquals(memory.getMemoryCells().get(10).getData(), lastLine(cache).getData()[2]);
+        assertEquals("x", lastLine(cache).getData()[3]);
+    }
+
+    @Test
+    void writebackWritesOnlyDirtySectors() {
+        Memory memory = new Memory(256);
+        SetAssociativeCache cache = cache(memory, WritePolicy.WRITE_BACK, 2);
+        cache.read(0);
+        cache.read(4);
+        cache.write(5, "a");
+        assertEquals(0b0011_0000L, lastLine(cache).getDirtyWords());
+
+        // Blocks 0, 2 and 4 share set 0 of 2 ways: the third evicts block 0
+        cache.read(16);
+        cache.read(32);
+        assertEquals(1, cache.getWritebacks());
+        assertEquals(2, memory.getWordsWritten());
+        assertEquals(1, memory.getWriteBursts());
+        assertEquals("a", memory.getMemoryCells().get(5).getData());
+    }
+
+    @Test
+    void wholeBlockSectorsMatchAnUnsectoredCache() {
+        Memory sectoredMemory = new Memory(4096), plainMemory = new Memory(4096);
+        SetAssociativeCache sectored = cache(sectoredMemory, WritePolicy.WRITE_BACK, BLOCK_SIZE);
+        SetAssociativeCache plain = new SetAssociativeCache(4, BLOCK_SIZE, 2, plainMemory, ReplacementPolicy.LRU,
+                WritePolicy.WRITE_BACK);
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            long address = random.nextInt(256);
+            boolean write = random.nextInt(4) == 0;
+            boolean sectoredHit = write ? sectored.write(address, "w" + i) : sectored.read(address);
+            boolean plainHit = write ? plain.write(address, "w" + i) : plain.read(address);
+            assertEquals(plainHit, sectoredHit, "access " + i);
+            assertEquals(plain.getLastMissType(), sectored.getLastMissType(), "access " + i);
+        }
+        assertEquals(plainMemory.getTrafficSummary(), sectoredMemory.getTrafficSummary());
+        assertEquals(plain.getWritebacks(), sectored.getWritebacks());
+        assertEquals(0, sectored.getWordsSaved());
+    }
+}
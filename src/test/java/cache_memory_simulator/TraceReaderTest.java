@@ -0,0 +1,128 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceReaderTest {
+    // Matches TraceReader's internal buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @TempDir
+    Path dir;
+
+    private static InputStream bytes(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Accesses as "R addr" / "W addr" strings
+    private static List<String> readAll(AddressStream stream) {
+        List<String> accesses = new ArrayList<>();
+        while (stream.hasNext()) {
+            long address = stream.nextLong();
+            accesses.add((stream.isWrite() ? "W " : "R ") + Long.toHexString(address));
+        }
+        return accesses;
+    }
+
+    @Test
+    void dineroLabels() {
+        String trace = "0 1000\n1 0x2000 1\n2 3000\n3 4000\n4 0\n# comment\n\n";
+        assertEquals(List.of("R 1000", "W 2000", "R 4000"), readAll(new DineroTraceReader(bytes(trace), false, 1)));
+        assertEquals(List.of("R 1000", "W 2000", "R 3000", "R 4000"), readAll(new DineroTraceReader(bytes(trace), true, 1)));
+    }
+
+    @Test
+    void lackeyKindsAndModify() {
+        String trace = "==123== banner\nI  0023C790,2\n S BE80199C,1\n L BE801950,1\n M 0025747C,1\n";
+        assertEquals(List.of("W be80199c", "R be801950", "R 25747c", "W 25747c"),
+                readAll(new LackeyTraceReader(bytes(trace), false, 1)));
+    }
+
+    @Test
+    void fullWidthAddresses() {
+        assertEquals(List.of("R ffffffffffffffff"), readAll(new DineroTraceReader(bytes("0 ffffffffffffffff\n"), false, 1)));
+        DineroTraceReader tooWide = new DineroTraceReader(bytes("0 1ffffffffffffffff\n"), false, 1);
+        assertThrows(UncheckedIOException.class, tooWide::hasNext);
+    }
+
+    @Test
+    void hexPrefixSplitAcrossBufferRefill() {
+        // The '0' of "0x" is the last byte of the first buffer fill; the 'x' arrives with the next one
+        String line = "1 0xABC\n";
+        String padding = "#" + "a".repeat(BUFFER_SIZE - 5) + "\n";
+        assertEquals(BUFFER_SIZE - 1, padding.length() + 2);
+        assertEquals(List.of("W abc", "R 1"), readAll(new DineroTraceReader(bytes(padding + line + "0 1\n"), false, 1)));
+    }
+
+    @Test
+    void recordsStraddlingManyBufferBoundaries() {
+        StringBuilder trace = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; trace.length() < 3 * BUFFER_SIZE; i++) {
+            long address = 0x10000L + i * 7L;
+            boolean write = i % 3 == 0;
+            trace.append(write ? " S " : " L ").append(Long.toHexString(address).toUpperCase()).append(",1\n");
+            expected.add((write ? "W " : "R ") + Long.toHexString(address));
+        }
+        assertEquals(expected, readAll(new LackeyTraceReader(bytes(trace.toString()), false, 1)));
+    }
+
+    @Test
+    void gzipIsDetectedAndFormatFollowsFileName() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            trace.append(i % 2).append(' ').append(Integer.toHexString(i * 16)).append('\n');
+        Path file = dir.resolve("run.din.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(trace.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        try (TraceReader reader = TraceReader.open(file)) {
+            List<String> accesses = readAll(reader);
+            // 16-byte stride over 8-byte words
+            assertEquals(20000, accesses.size());
+            assertEquals("W 9c3e", accesses.get(19999));
+        }
+
+        Path plain = dir.resolve("run.txt");
+        Files.writeString(plain, " L 10,4\n");
+        try (TraceReader reader = TraceReader.open(plain)) {
+            assertEquals(List.of("R 2"), readAll(reader));
+        }
+        assertThrows(IllegalArgumentException.class, () -> TraceReader.open(plain, "pin"));
+    }
+
+    @Test
+    void byteAddressesBecomeOneAccessPerWordTouched() {
+        // 8-byte words: an aligned 8-byte load is one word, a 4-byte store at 0x1e straddles words 3 and 4,
+        // and a 16-byte modify reads both of its words before writing them
+        String trace = " L 10,8\n S 1E,4\n M 20,16\n S 2F,1\n";
+        assertEquals(List.of("R 2", "W 3", "W 4", "R 4", "R 5", "W 4", "W 5", "W 5"),
+                readAll(new LackeyTraceReader(bytes(trace), false)));
+        // Dinero sizes are optional; without one an access is a single byte
+        assertEquals(List.of("R 1", "W 1", "W 2"), readAll(new DineroTraceReader(bytes("0 0xf\n1 0xe 4\n"), false)));
+        // Clamped at the top of the address space instead of wrapping to word 0
+        assertEquals(List.of("R 1fffffffffffffff"), readAll(new DineroTraceReader(bytes("0 fffffffffffffffe 8\n"), false)));
+    }
+
+    @Test
+    void malformedLineReportsLineNumber() {
+        DineroTraceReader reader = new DineroTraceReader(bytes("0 10\n7 20\n"), false, 1);
+        reader.nextLong();
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, reader::hasNext);
+        assertTrue(e.getCause().getMessage().contains("line 2"), e.getCause().getMessage());
+    }
+}
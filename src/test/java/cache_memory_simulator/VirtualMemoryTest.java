@@ -0,0 +1,79 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualMemoryTest {
+    private static final long PAGE = 4096;
+
+    private static SetAssociativeCache dataCache() {
+        return new SetAssociativeCache(64, 8, 4, new Memory(0), ReplacementPolicy.LRU, WritePolicy.WRITE_BACK);
+    }
+
+    private static VirtualMemory translation(CacheMemory cache) {
+        // 4-entry fully associative L1 TLB, 16-entry 4-way L2 TLB
+        return new VirtualMemory(cache, PAGE, 4, 4, 16, 4, ReplacementPolicy.LRU);
+    }
+
+    @Test
+    void largerPagesNeedFewerWalkLevels() {
+        assertEquals(4, new VirtualMemory(dataCache(), TraceRunner.parseSize("4k"), 4, 4, 0, 0, ReplacementPolicy.LRU).getLevels());
+        assertEquals(3, new VirtualMemory(dataCache(), TraceRunner.parseSize("2m"), 4, 4, 0, 0, ReplacementPolicy.LRU).getLevels());
+        assertEquals(2, new VirtualMemory(dataCache(), TraceRunner.parseSize("1g"), 4, 4, 0, 0, ReplacementPolicy.LRU).getLevels());
+        assertThrows(IllegalArgumentException.class,
+                () -> new VirtualMemory(dataCache(), 3000, 4, 4, 0, 0, ReplacementPolicy.LRU));
+    }
+
+    @Test
+    void tlbHitsAndMisses() {
+        VirtualMemory vm = translation(dataCache());
+        long first = vm.translate(5);
+        // Same page: L1 TLB hit, same frame
+        assertEquals(first + 10, vm.translate(15));
+        assertEquals(1, vm.getL1Misses());
+        assertEquals(1, vm.getWalks());
+
+        // Eight pages overflow the 4-entry L1 TLB but fit in the L2 TLB
+        for (long page = 0; page < 8; page++)
+            vm.translate(page * PAGE);
+        assertEquals(8, vm.getWalks());
+        assertEquals(8, vm.getMappedPages());
+        long l1Misses = vm.getL1Misses();
+        for (long page = 0; page < 4; page++)
+            vm.translate(page * PAGE);
+        assertEquals(l1Misses + 4, vm.getL1Misses());
+        assertEquals(8, vm.getL2Misses());
+        assertEquals(8, vm.getWalks());
+        assertEquals(vm.translate(PAGE + 1), vm.translate(PAGE) + 1);
+    }
+
+    @Test
+    void pageTableReadsGoThroughTheDataCache() {
+        SetAssociativeCache cache = dataCache();
+        VirtualMemory vm = translation(cache);
+        vm.translate(0);
+        assertEquals(4, vm.getPteReads());
+        assertEquals(4, cache.getHits() + cache.getMisses());
+        assertEquals(0, vm.getPteHits());
+
+        // A neighbouring page shares the upper three levels, whose PTEs are now cached; its
+        // last-level PTE is the next word of the same leaf node, in the same block
+        vm.translate(PAGE);
+        assertEquals(8, vm.getPteReads());
+        assertEquals(8, cache.getHits() + cache.getMisses());
+        assertEquals(4, vm.getPteHits());
+        assertEquals(vm.getPteHits(), cache.getHits());
+        assertEquals(4 * VirtualMemory.MEMORY_CYCLES + 4 * VirtualMemory.CACHE_HIT_CYCLES, vm.getWalkCycles());
+    }
+
+    @Test
+    void checkpointsAndSkipAreRejectedWithTranslation() {
+        for (String option : new String[]{"checkpoint-in", "checkpoint-out", "skip"})
+            assertThrows(IllegalArgumentException.class,
+                    () -> TraceRunner.buildVirtualMemory(Map.of("page", "4k", option, "1"), dataCache()));
+        assertNull(TraceRunner.buildVirtualMemory(Map.of("skip", "1"), dataCache()));
+    }
+}
@@ -0,0 +1,97 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedMetricsTest {
+
+    private static AbstractCache cache(Memory memory) {
+        return new SetAssociativeCache(16, 4, 2, memory, ReplacementPolicy.LRU, WritePolicy.WRITE_BACK);
+    }
+
+    private static String csv(WindowedMetrics metrics) throws IOException {
+        StringWriter out = new StringWriter();
+        metrics.writeCsv(out);
+        return out.toString();
+    }
+
+    @Test
+    void ringBufferKeepsTheLatestWindows() throws IOException {
+        WindowedMetrics metrics = new WindowedMetrics(cache(new Memory(64)), 10, 4, 0.2);
+        for (int i = 0; i < 95; i++)
+            metrics.record(i % 10 < 3 + i / 10, "Conflict", 0);
+        // The trailing five accesses do not make a window
+        assertEquals(9, metrics.getClosedWindows());
+        assertEquals(5, metrics.getFirstRetainedWindow());
+        assertEquals(0.8, metrics.getHitRatio(5), 1e-9);
+        assertEquals(1.0, metrics.getHitRatio(8), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> metrics.getHitRatio(4));
+        assertThrows(IllegalArgumentException.class, () -> metrics.getHitRatio(9));
+        // Header plus one row per retained window
+        assertEquals(5, csv(metrics).lines().count());
+    }
+
+    @Test
+    void aChangeInBehaviourStartsANewPhase() {
+        WindowedMetrics metrics = new WindowedMetrics(cache(new Memory(64)), 100, 64, 0.2);
+        for (int i = 0; i < 1000; i++)
+            assertFalse(metrics.record(i % 10 != 0, "Compulsory", 0));
+        // All capacity misses with writebacks: the first such window starts phase 1, later ones stay in it
+        int changes = 0;
+        for (int i = 0; i < 1000; i++)
+            if (metrics.record(false, "Capacity", i % 2))
+                changes++;
+        assertEquals(1, changes);
+        assertEquals(2, metrics.getPhaseCount());
+        assertEquals(0.9, metrics.getPhaseHitRatio(0), 1e-9);
+        assertEquals(0.0, metrics.getPhaseHitRatio(1), 1e-9);
+        assertEquals(1, metrics.getPhase(10));
+        assertEquals(50, metrics.getWritebacks(10));
+        assertTrue(metrics.getPhaseSummary().contains("2 phases"));
+    }
+
+    @Test
+    void metricsRebuiltAfterUndoMatchAFreshRun() throws IOException {
+        Random random = new Random(5);
+        long[] addresses = new long[3000];
+        for (int i = 0; i < addresses.length; i++)
+            addresses[i] = random.nextInt(i < 1500 ? 48 : 400);
+
+        Memory memory = new Memory(512);
+        AbstractCache cache = cache(memory);
+        AccessHistory history = new AccessHistory(cache, memory, 500);
+        WindowedMetrics live = new WindowedMetrics(cache, 100);
+        for (long address : addresses)
+            live.record(history.write(address, "x"));
+
+        history.jumpTo(1234);
+        for (int i = 0; i < 50; i++)
+            history.stepBack();
+        WindowedMetrics rebuilt = new WindowedMetrics(cache, 100);
+        history.replayInto(rebuilt);
+
+        Memory freshMemory = new Memory(512);
+        AbstractCache fresh = cache(freshMemory);
+        WindowedMetrics expected = new WindowedMetrics(fresh, 100);
+        for (int i = 0; i < 1184; i++)
+            expected.record(fresh.write(addresses[i], "x"));
+
+        assertEquals(11, rebuilt.getClosedWindows());
+        assertEquals(csv(expected), csv(rebuilt));
+        assertEquals(expected.getPhaseSummary(), rebuilt.getPhaseSummary());
+        for (long w = 0; w < rebuilt.getClosedWindows(); w++)
+            assertTrue(rebuilt.getWritebacks(w) >= 0);
+
+        // Accesses made after the rebuild continue from the restored counters
+        for (int i = 1184; i < 1300; i++)
+            rebuilt.record(history.write(addresses[i], "x"));
+        for (int i = 1184; i < 1300; i++)
+            expected.record(fresh.write(addresses[i], "x"));
+        assertEquals(csv(expected), csv(rebuilt));
+    }
+}
@@ -0,0 +1,118 @@
+package cache_memory_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadsTest {
+
+    private static long[] take(AddressStream stream, int count) {
+        long[] addresses = new long[count];
+        for (int i = 0; i < count; i++)
+            addresses[i] = stream.nextLong();
+        return addresses;
+    }
+
+    private static long drain(AddressStream stream) {
+        long count = 0;
+        while (stream.hasNext()) {
+            stream.nextLong();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void stridedWrapsAroundFootprint() {
+        assertArrayEquals(new long[]{100, 103, 106, 101, 104}, take(Workloads.strided(100, 8, 3, 5), 5));
+    }
+
+    @Test
+    void streamsStopAfterCount() {
+        assertEquals(37, drain(Workloads.sequential(0, 16, 37)));
+        assertEquals(0, drain(Workloads.uniform(0, 16, 0, 1)));
+    }
+
+    @Test
+    void sameSeedGivesSameStream() {
+        assertArrayEquals(take(Workloads.uniform(0, 1000, 500, 7), 500), take(Workloads.uniform(0, 1000, 500, 7), 500));
+        assertArrayEquals(take(Workloads.zipfian(0, 100, 1, 0.9, 500, 7), 500), take(Workloads.zipfian(0, 100, 1, 0.9, 500, 7), 500));
+    }
+
+    @Test
+    void zipfFavoursFirstItemAndStaysInRange() {
+        int[] counts = new int[50];
+        AddressStream stream = Workloads.zipfian(1000, 50, 4, 0.99, 20000, 3);
+        while (stream.hasNext()) {
+            long address = stream.nextLong();
+            assertTrue(address >= 1000 && address < 1200 && (address - 1000) % 4 == 0, "address " + address);
+            counts[(int) (address - 1000) / 4]++;
+        }
+        for (int item = 1; item < counts.length; item++)
+            assertTrue(counts[0] > counts[item], "item " + item + " is hotter than item 0");
+    }
+
+    @Test
+    void pointerChaseVisitsEveryNodeOncePerCycle() {
+        long[] addresses = take(Workloads.pointerChase(0, 64, 4, 128, 11), 128);
+        Set<Long> firstCycle = new HashSet<>();
+        for (int i = 0; i < 64; i++)
+            firstCycle.add(addresses[i]);
+        assertEquals(64, firstCycle.size());
+        for (int i = 0; i < 64; i++)
+            assertEquals(addresses[i], addresses[i + 64]);
+    }
+
+    @Test
+    void matrixMultiplyLoadsTwoOperandsPerProductAndStoresEachResult() {
+        int n = 5;
+        AddressStream stream = Workloads.matrixMultiply(0, n, 1);
+        long accesses = 0, stores = 0;
+        while (stream.hasNext()) {
+            long address = stream.nextLong();
+            accesses++;
+            if (stream.isWrite()) {
+                stores++;
+                assertTrue(address >= 2L * n * n && address < 3L * n * n, "store outside C: " + address);
+            }
+        }
+        assertEquals(2L * n * n * n + (long) n * n, accesses);
+        assertEquals((long) n * n, stores);
+    }
+
+    @Test
+    void blockedMatrixMultiplyTouchesSameAddressesAsNaive() {
+        int n = 8;
+        Set<Long> naive = new HashSet<>(), blocked = new HashSet<>();
+        AddressStream a = Workloads.matrixMultiply(0, n, 1), b = Workloads.blockedMatrixMultiply(0, n, 4, 1);
+        while (a.hasNext()) naive.add(a.nextLong());
+        while (b.hasNext()) blocked.add(b.nextLong());
+        assertEquals(naive, blocked);
+    }
+
+    @Test
+    void interleaveAlternatesTenants() {
+        AddressStream stream = Workloads.interleave(Workloads.sequential(0, 100, 3), Workloads.sequential(1000, 100, 1));
+        assertEquals(0, stream.nextLong());
+        assertEquals(0, stream.tenant());
+        assertEquals(1000, stream.nextLong());
+        assertEquals(1, stream.tenant());
+        assertEquals(1, stream.nextLong());
+        assertEquals(2, stream.nextLong());
+        assertEquals(0, stream.tenant());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    void fromSpecParsesParameters() {
+        assertArrayEquals(new long[]{0x10, 0x12, 0x14}, take(Workloads.fromSpec("stride,base=0x10,stride=2,footprint=64,count=3"), 3));
+        AddressStream stores = Workloads.fromSpec("seq,count=2000,writes=1");
+        stores.nextLong();
+        assertTrue(stores.isWrite());
+        assertThrows(IllegalArgumentException.class, () -> Workloads.fromSpec("nonsense"));
+        assertThrows(IllegalArgumentException.class, () -> Workloads.fromSpec("seq,count"));
+    }
+}